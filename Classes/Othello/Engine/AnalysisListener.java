@@ -0,0 +1,18 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+
+/**
+ * Called by BatchAnalyzer.Analyze() when a position has been analyzed. index
+ * is the number of the position in the order the positions were given
+ * (starting at 0). It is called on one of the threads of the analyzer, and
+ * the positions are not necessarily finished in order.
+ */
+
+public interface AnalysisListener
+{
+  public void PositionAnalyzed(long index, Game g, AnalyzedMove moves[]);
+}
@@ -0,0 +1,81 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+
+/**
+ * The class AnalyzedMove is a legal move together with the value the search
+ * found for it (see Engine.AnalyzeMoves()).
+ * <P>
+ * The value is for the player who makes the move, and larger is better. If
+ * the search reached the end of the game (GetFinal()), it is the number of
+ * pieces the player wins by (negative if the game is lost) with the best
+ * play from both sides. Otherwise it is the value of the evaluation, which
+ * is only meant to be compared with the values of the other moves in the
+ * same position.
+ */
+
+public class AnalyzedMove
+{
+  private Move m_move;
+  private int m_value;
+  private int m_depth;
+  private boolean m_final;
+  private Move m_pv[];
+
+
+  public AnalyzedMove(Move move, int value, int depth, boolean isfinal,
+    Move pv[])
+  {
+    m_move = move;
+    m_value = value;
+    m_depth = depth;
+    m_final = isfinal;
+    m_pv = pv;
+  }
+
+
+  public Move GetMove() { return m_move; }
+
+
+  public int GetValue() { return m_value; }
+
+
+  /**
+   * Returns the number of moves that were searched ahead (including this
+   * one).
+   */
+
+  public int GetDepth() { return m_depth; }
+
+
+  /**
+   * Returns true if the search reached the end of the game, so that the
+   * value is the final result.
+   */
+
+  public boolean GetFinal() { return m_final; }
+
+
+  /**
+   * Returns the principal variation: the move followed by the moves that
+   * both players are expected to make after it (the ones that give the
+   * value). It is at most GetDepth() moves long, and may be shorter if the
+   * game ends or if the search results could not be followed further.
+   */
+
+  public Move[] GetPrincipalVariation() { return m_pv; }
+
+
+  public String toString()
+  {
+    String s = m_value + (m_final ? " final" : "") + " depth " + m_depth;
+
+    for (int i=0; i < m_pv.length; i++)
+      s += " " + (char) ('A' + m_pv[i].GetX() - 1) + m_pv[i].GetY();
+
+    return s;
+  }
+}
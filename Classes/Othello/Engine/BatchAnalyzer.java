@@ -0,0 +1,281 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * The class BatchAnalyzer computes the values of all the legal moves (see
+ * Engine.AnalyzeMoves()) for many positions, for instance all the positions
+ * of a set of games that are to be reviewed.
+ * <P>
+ * The positions are taken one at a time from an Iterator, so they can be
+ * produced while the analysis is running and do not all have to be in
+ * memory, and they are analyzed on several threads at the same time. Each
+ * thread has its own Engine, and all of them share a transposition table
+ * (see class SharedTranspositionTable), so that positions that are reached
+ * in the searches of several positions are only searched once, and a cache
+ * of the results for positions that have been analyzed (see class
+ * PositionCache). Positions are often repeated between
+ * games (the openings in particular), or are mirror images or rotations of
+ * each other, and those are only analyzed once. The cache is kept between
+ * calls to Analyze() until ClearCache() is called.
+ * <P>
+ * Only one call to Analyze() may be running at a time.
+ */
+
+public class BatchAnalyzer
+{
+  /**
+   * The size in bytes of the transposition table the analyzer creates when
+   * none has been set with SetSharedTranspositionTable().
+   */
+
+  public static final long DEFAULT_TRANSPOSITION_TABLE_SIZE = 64L << 20;
+
+  private int m_level;
+  private int m_threads;
+  private Engine m_engines[];
+  private PatternEvaluator m_patterns;
+  private PositionCache m_cache = new PositionCache();
+  private SharedTranspositionTable m_shared_tt;
+  private long m_next;
+  private RuntimeException m_failure;
+
+
+  /**
+   * Creates an analyzer that searches at strength level level on one
+   * thread per processor.
+   */
+
+  public BatchAnalyzer(int level)
+  {
+    this(level, Runtime.getRuntime().availableProcessors());
+  }
+
+
+  /**
+   * Creates an analyzer that searches at strength level level on threads
+   * threads.
+   */
+
+  public BatchAnalyzer(int level, int threads)
+  {
+    m_level = level;
+    m_threads = Math.max(threads, 1);
+    m_engines = new Engine[m_threads];
+  }
+
+
+  /**
+   * Sets the pattern evaluator that the engines use (see
+   * Engine.SetPatternEvaluator()). The cache is cleared, since the results
+   * in it were computed with the old evaluation.
+   */
+
+  public synchronized void SetPatternEvaluator(PatternEvaluator evaluator)
+  {
+    m_patterns = evaluator;
+    m_cache.Clear();
+
+    for (int i=0; i < m_threads; i++)
+      if (m_engines[i] != null) m_engines[i].SetPatternEvaluator(evaluator);
+  }
+
+
+  /**
+   * Analyzes the positions (the current positions of the games) from
+   * positions and calls listener for each one, with the moves the best
+   * first (an empty array for a game that is over). Returns when all of
+   * them have been analyzed. The games must not be changed until then.
+   */
+
+  public void Analyze(final Iterator<Game> positions,
+    final AnalysisListener listener) throws InterruptedException
+  {
+    Thread threads[] = new Thread[m_threads];
+
+    synchronized (this)
+    {
+      m_next = 0;
+      m_failure = null;
+    }
+
+    // The results from earlier batches are the first to be replaced:
+
+    GetSharedTranspositionTable().NewSearch();
+
+    for (int i=0; i < m_threads; i++)
+    {
+      final Engine engine = GetEngine(i);
+
+      threads[i] = new Thread(new Runnable()
+      {
+        public void run() { AnalyzePositions(engine, positions, listener); }
+      }, "BatchAnalyzer-" + i);
+
+      threads[i].start();
+    }
+
+    try
+    {
+      for (int i=0; i < m_threads; i++) threads[i].join();
+    }
+    catch (InterruptedException e)
+    {
+      for (int i=0; i < m_threads; i++) m_engines[i].SetInterrupt(true);
+      for (int i=0; i < m_threads; i++) threads[i].join();
+
+      throw e;
+    }
+
+    synchronized (this)
+    {
+      if (m_failure != null) throw m_failure;
+    }
+  }
+
+
+  /**
+   * Analyzes the positions in positions and returns the moves for each of
+   * them, in the same order.
+   */
+
+  public List<AnalyzedMove[]> Analyze(List<Game> positions)
+    throws InterruptedException
+  {
+    final AnalyzedMove results[][] = new AnalyzedMove[positions.size()][];
+
+    Analyze(positions.iterator(), new AnalysisListener()
+    {
+      public void PositionAnalyzed(long index, Game g, AnalyzedMove moves[])
+      {
+        results[(int) index] = moves;
+      }
+    });
+
+    return new ArrayList<AnalyzedMove[]>(Arrays.asList(results));
+  }
+
+
+  /**
+   * Returns the number of positions whose results are in the cache.
+   */
+
+  public int GetCacheSize() { return GetPositionCache().GetSize(); }
+
+
+  public void ClearCache() { GetPositionCache().Clear(); }
+
+
+  /**
+   * Sets the cache of results, to share it with other analyzers (that
+   * search at the same level and evaluate in the same way). Each analyzer
+   * has a cache of its own with PositionCache.DEFAULT_CAPACITY results
+   * otherwise.
+   */
+
+  public synchronized void SetPositionCache(PositionCache cache)
+  {
+    m_cache = cache;
+  }
+
+
+  public synchronized PositionCache GetPositionCache() { return m_cache; }
+
+
+  /**
+   * Sets the transposition table that the engines share, to share it with
+   * other analyzers or engines as well. Must not be called while Analyze()
+   * is running. The analyzer creates a table of
+   * DEFAULT_TRANSPOSITION_TABLE_SIZE bytes otherwise.
+   */
+
+  public synchronized void SetSharedTranspositionTable(
+    SharedTranspositionTable table)
+  {
+    m_shared_tt = table;
+
+    for (int i=0; i < m_threads; i++)
+      if (m_engines[i] != null)
+        m_engines[i].SetSharedTranspositionTable(table);
+  }
+
+
+  public synchronized SharedTranspositionTable GetSharedTranspositionTable()
+  {
+    if (m_shared_tt == null)
+      m_shared_tt = new SharedTranspositionTable(
+        DEFAULT_TRANSPOSITION_TABLE_SIZE);
+
+    return m_shared_tt;
+  }
+
+
+  private synchronized Engine GetEngine(int i)
+  {
+    if (m_engines[i] == null)
+    {
+      m_engines[i] = new Engine(m_level);
+      m_engines[i].SetPatternEvaluator(m_patterns);
+      m_engines[i].SetSharedTranspositionTable(GetSharedTranspositionTable());
+    }
+
+    m_engines[i].SetInterrupt(false);
+
+    return m_engines[i];
+  }
+
+
+  /**
+   * Run by each thread: analyzes positions until there are none left.
+   */
+
+  private void AnalyzePositions(Engine engine, Iterator<Game> positions,
+    AnalysisListener listener)
+  {
+    try
+    {
+      for (;;)
+      {
+        Game g;
+        long index;
+
+        synchronized (this)
+        {
+          if (m_failure != null || ! positions.hasNext()) return;
+
+          g = positions.next();
+          index = m_next++;
+        }
+
+        PositionCache cache = GetPositionCache();
+        AnalyzedMove moves[] = cache.GetAnalysis(g, m_level);
+
+        if (moves == null)
+        {
+          moves = engine.AnalyzeMoves(g);
+
+          if (moves == null) return; // Interrupted
+
+          cache.PutAnalysis(g, m_level, moves);
+        }
+
+        listener.PositionAnalyzed(index, g, moves);
+      }
+    }
+    catch (RuntimeException e)
+    {
+      synchronized (this)
+      {
+        if (m_failure == null) m_failure = e;
+      }
+    }
+  }
+}
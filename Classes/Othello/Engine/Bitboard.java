@@ -0,0 +1,359 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+
+/**
+ * The class Bitboard holds the functions that are used to work with an
+ * Othello position represented as two 64 bit integers, one for the pieces of
+ * each color. The square (x, y) (1 to 8 in both directions) is represented by
+ * bit number (x-1)*8 + (y-1), so a step in the y direction is a shift by one
+ * bit and a step in the x direction is a shift by eight bits.
+ * <P>
+ * With this representation all the moves for a player can be generated, and
+ * the pieces turned by a move can be found, with a few shifts and masks
+ * instead of by scanning the board square by square in eight directions.
+ */
+
+final class Bitboard
+{
+  /**
+   * All squares where y == 1 and y == 8 respectively. They are used to mask
+   * away the bits that would otherwise wrap around to the next row when a
+   * board is shifted in the y direction.
+   */
+
+  static final long Y1_SQUARES = 0x0101010101010101L;
+  static final long Y8_SQUARES = 0x8080808080808080L;
+
+  /**
+   * The corners, the squares where x == 1 or x == 8, and the squares where
+   * y == 1 or y == 8.
+   */
+
+  static final long CORNERS = 0x8100000000000081L;
+  static final long X_EDGES = 0xff000000000000ffL;
+  static final long Y_EDGES = Y1_SQUARES | Y8_SQUARES;
+
+  /**
+   * The eight directions as the number of bits a board is shifted to the left
+   * (negative values mean a shift to the right) and the masks that remove
+   * bits that have wrapped around after the shift.
+   */
+
+  private static final int DIRECTION_SHIFT[] = { 1, -1, 8, -8, 9, 7, -7, -9 };
+
+  private static final long DIRECTION_MASK[] =
+  {
+    ~Y1_SQUARES, ~Y8_SQUARES, -1L, -1L,
+    ~Y1_SQUARES, ~Y8_SQUARES, ~Y1_SQUARES, ~Y8_SQUARES
+  };
+
+  private Bitboard() {}
+
+
+  /**
+   * Returns the index (0 to 63) of the square (x, y).
+   */
+
+  static int Square(int x, int y) { return (x-1)*8 + (y-1); }
+
+
+  /**
+   * Returns the x coordinate (1 to 8) of square index sq.
+   */
+
+  static int SquareX(int sq) { return (sq >> 3) + 1; }
+
+
+  /**
+   * Returns the y coordinate (1 to 8) of square index sq.
+   */
+
+  static int SquareY(int sq) { return (sq & 7) + 1; }
+
+
+  /**
+   * Returns the bit that represents the square (x, y).
+   */
+
+  static long SquareBit(int x, int y) { return 1L << Square(x, y); }
+
+
+  /**
+   * Shifts all bits in b one step in direction dir (0 to 7).
+   */
+
+  static long Shift(long b, int dir)
+  {
+    int s = DIRECTION_SHIFT[dir];
+
+    if (s > 0) return (b << s) & DIRECTION_MASK[dir];
+    else return (b >>> -s) & DIRECTION_MASK[dir];
+  }
+
+
+  /**
+   * Returns the squares in b and the squares next to them (in any of the
+   * eight directions).
+   */
+
+  static long Neighbours(long b)
+  {
+    b |= ((b << 1) & ~Y1_SQUARES) | ((b >>> 1) & ~Y8_SQUARES);
+
+    return b | (b << 8) | (b >>> 8);
+  }
+
+
+  /**
+   * Returns the pieces in playerbits that can never be turned because they
+   * are on an edge and connected to a corner by a row of pieces of the same
+   * color along the edge. (There are other stable pieces, but these are the
+   * ones that are cheap to find, and the most common ones.)
+   */
+
+  static long EdgeStable(long playerbits)
+  {
+    long stable = playerbits & CORNERS;
+
+    if (stable == 0) return 0;
+
+    long prev;
+
+    do
+    {
+      prev = stable;
+      stable |= playerbits & X_EDGES & ((stable << 1) | (stable >>> 1));
+      stable |= playerbits & Y_EDGES & ((stable << 8) | (stable >>> 8));
+    }
+    while (stable != prev);
+
+    return stable;
+  }
+
+
+  /**
+   * Returns the squares where the owner of playerbits can make a legal move.
+   */
+
+  static long GenerateMoves(long playerbits, long opponentbits)
+  {
+    // A run of opponent pieces in a direction that changes y can not
+    // include pieces where y == 1 or y == 8 (the move would be outside the
+    // board), and without them no bits wrap around to the next row:
+
+    long inner = opponentbits & ~Y_EDGES;
+
+    long moves = GenerateMoves(playerbits, inner, 1) |
+      GenerateMoves(playerbits, opponentbits, 8) |
+      GenerateMoves(playerbits, inner, 7) |
+      GenerateMoves(playerbits, inner, 9);
+
+    return moves & ~(playerbits | opponentbits);
+  }
+
+
+  /**
+   * Returns the squares after runs of up to six pieces in opponentbits that
+   * start next to a piece in playerbits, in the two directions where a step
+   * is a shift by s bits (empty or not, see GenerateMoves()).
+   */
+
+  private static long GenerateMoves(long playerbits, long opponentbits, int s)
+  {
+    long left = (playerbits << s) & opponentbits;
+    long right = (playerbits >>> s) & opponentbits;
+
+    left |= (left << s) & opponentbits;
+    right |= (right >>> s) & opponentbits;
+    left |= (left << s) & opponentbits;
+    right |= (right >>> s) & opponentbits;
+    left |= (left << s) & opponentbits;
+    right |= (right >>> s) & opponentbits;
+    left |= (left << s) & opponentbits;
+    right |= (right >>> s) & opponentbits;
+    left |= (left << s) & opponentbits;
+    right |= (right >>> s) & opponentbits;
+
+    return (left << s) | (right >>> s);
+  }
+
+
+  /**
+   * Returns the opponent pieces that are turned when the owner of playerbits
+   * plays at square index sq. Returns 0 if the move is not legal (or if the
+   * square is not empty).
+   */
+
+  static long ComputeFlips(int sq, long playerbits, long opponentbits)
+  {
+    long move = 1L << sq;
+
+    if (((playerbits | opponentbits) & move) != 0) return 0;
+
+    long flips = 0;
+
+    for (int dir=0; dir<8; dir++)
+    {
+      long f = 0;
+      long b = Shift(move, dir);
+
+      while ((b & opponentbits) != 0)
+      {
+        f |= b;
+        b = Shift(b, dir);
+      }
+
+      if ((b & playerbits) != 0) flips |= f;
+    }
+
+    return flips;
+  }
+
+
+  /**
+   * Returns b mirrored in the x direction (x becomes 9-x).
+   */
+
+  static long MirrorX(long b) { return Long.reverseBytes(b); }
+
+
+  /**
+   * Returns b mirrored in the y direction (y becomes 9-y).
+   */
+
+  static long MirrorY(long b)
+  {
+    b = ((b >>> 1) & 0x5555555555555555L) | ((b & 0x5555555555555555L) << 1);
+    b = ((b >>> 2) & 0x3333333333333333L) | ((b & 0x3333333333333333L) << 2);
+    b = ((b >>> 4) & 0x0f0f0f0f0f0f0f0fL) | ((b & 0x0f0f0f0f0f0f0f0fL) << 4);
+
+    return b;
+  }
+
+
+  /**
+   * Returns b mirrored in the diagonal from (1, 1) to (8, 8) (x and y are
+   * swapped).
+   */
+
+  static long Transpose(long b)
+  {
+    long t;
+
+    t = 0x0f0f0f0f00000000L & (b ^ (b << 28));
+    b ^= t ^ (t >>> 28);
+    t = 0x3333000033330000L & (b ^ (b << 14));
+    b ^= t ^ (t >>> 14);
+    t = 0x5500550055005500L & (b ^ (b << 7));
+    b ^= t ^ (t >>> 7);
+
+    return b;
+  }
+
+
+  /**
+   * Returns b transformed by one of the eight symmetries of the board
+   * (0 to 7, 0 leaves the board unchanged): bit 2 of symmetry swaps x and y,
+   * and then bit 0 mirrors in the x direction and bit 1 in the y direction.
+   */
+
+  static long Transform(long b, int symmetry)
+  {
+    if ((symmetry & 4) != 0) b = Transpose(b);
+    if ((symmetry & 1) != 0) b = MirrorX(b);
+    if ((symmetry & 2) != 0) b = MirrorY(b);
+
+    return b;
+  }
+
+
+  /**
+   * Returns the square index that sq is moved to by Transform().
+   */
+
+  static int TransformSquare(int sq, int symmetry)
+  {
+    return Long.numberOfTrailingZeros(Transform(1L << sq, symmetry));
+  }
+
+
+  /**
+   * Returns the square index that is moved to sq by Transform() (so that
+   * TransformSquare(InverseTransformSquare(sq, s), s) == sq).
+   */
+
+  static int InverseTransformSquare(int sq, int symmetry)
+  {
+    // Mirroring is its own inverse, swapping x and y must be done last:
+
+    long b = 1L << sq;
+
+    if ((symmetry & 2) != 0) b = MirrorY(b);
+    if ((symmetry & 1) != 0) b = MirrorX(b);
+    if ((symmetry & 4) != 0) b = Transpose(b);
+
+    return Long.numberOfTrailingZeros(b);
+  }
+
+
+  /**
+   * Returns a 64 bit hash key for the position where the player to move has
+   * playerbits and the opponent has opponentbits.
+   */
+
+  static long Key(long playerbits, long opponentbits)
+  {
+    long h = playerbits * 0x9e3779b97f4a7c15L ^
+      Long.rotateLeft(opponentbits * 0xc2b2ae3d27d4eb4fL, 31);
+
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+
+    return h;
+  }
+
+
+  /**
+   * Returns the symmetry (see Transform()) that transforms the position to
+   * its canonical form, which is the one of the eight equivalent positions
+   * that has the lowest key. Positions that are mirror images or rotations
+   * of each other have the same canonical form (and canonical key).
+   */
+
+  static int CanonicalSymmetry(long playerbits, long opponentbits)
+  {
+    int best = 0;
+    long bestkey = Key(playerbits, opponentbits);
+
+    for (int s=1; s < 8; s++)
+    {
+      long key = Key(Transform(playerbits, s), Transform(opponentbits, s));
+
+      if (key < bestkey)
+      {
+        best = s;
+        bestkey = key;
+      }
+    }
+
+    return best;
+  }
+
+
+  /**
+   * Returns the key of the canonical form of the position (see
+   * CanonicalSymmetry()).
+   */
+
+  static long CanonicalKey(long playerbits, long opponentbits)
+  {
+    int s = CanonicalSymmetry(playerbits, opponentbits);
+
+    return Key(Transform(playerbits, s), Transform(opponentbits, s));
+  }
+}
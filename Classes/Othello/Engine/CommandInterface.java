@@ -1,245 +1,689 @@
-
-// This code is freely distributable, but may neither be sold nor used or
-// included in any product sold for profit without permission from
-// Mats Luthman.
-
-package Othello.Engine;
-
-import java.util.logging.Logger;
-
-    
-/**
- * Implements an interface to Othello.Engine that is directed to
- * what a user interface might want to do.
- */
-
-public class CommandInterface implements Runnable
-{
-  private static final Logger log = Logger.getLogger(CommandInterface.class.getName());
-
-  public CommandInterface()
-  {
-    log.info("CommandInterface");
-  }
-  
-
-  public void run()
-  {
-    //int player = m_Game.GetWhoseTurn();
-
-    Move move = m_Engine.ComputeMove(m_Game);
-
-    if (move != null)
-      m_Game.MakeMove(move);
-
-    m_calculating = false;
-
-    CommandInterfaceListener tmpListener = m_Listener;
-    m_Listener = null; // ComputeMove() could be called by
-                       // ComputationFinished() setting m_Listener again
-
-    tmpListener.ComputationFinished(move);
-  }
-
-
-  public int GetSquare(int x, int y)
-  {
-    return m_Game.GetSquare(x, y);
-  }
-
-
-  public int GetScoreWhite()
-  {
-    return m_Game.GetScore(Score.WHITE);
-  }
-
-
-  public int GetScoreBlack()
-  {
-    return m_Game.GetScore(Score.BLACK);
-  }
-
-
-  public int GetLevel()
-  {
-    return m_Engine.GetStrength();
-  }
-
-
-  public int GetWhoseTurn()
-  {
-    return m_Game.GetWhoseTurn();
-  }
-
-
-  public String GetLastMove()
-  {
-    if (m_Game.GetLastMove() == null) return null;
-
-    char[] ch = new char[1];
-    ch[0] = (char) ('A' + m_Game.GetLastMove().GetX() - 1);
-
-    String returnvalue = new String(ch);
-
-    return returnvalue + m_Game.GetLastMove().GetY();
-  }
-
-
-  public boolean MoveIsPossible()
-  {
-    if (m_calculating) return false;
-
-    return m_Game.GetWhoseTurn() != Score.NOBODY;
-  }
-
-
-  public void ComputeMove(CommandInterfaceListener Listener)
-  {
-    m_Listener = Listener;
-
-    m_calculating = true;
-
-    Thread thread = new Thread(this);
-    thread.setPriority(Thread.MIN_PRIORITY);
-    thread.start();
-  }
-
-
-  public boolean ComputeMoveIsPossible()
-  {
-    return ! m_calculating && m_Game.GetWhoseTurn() != Score.NOBODY;
-  }
-
-
-  public boolean MakeMove(int x, int y)
-  {
-    boolean returnvalue = false;
-
-    if (MakeMoveIsPossible(x, y))
-    {
-      int player = m_Game.GetWhoseTurn();
-
-      m_last_entered_move_score =
-        m_Game.GetScore(Score.WHITE) + m_Game.GetScore(Score.BLACK);
-
-      Move m = new Move(x, y, player);
-
-      if (m_Game.MoveIsLegal(m))
-      {
-        m_last_entered_move_score =
-          m_Game.GetScore(Score.WHITE) + m_Game.GetScore(Score.BLACK);
-
-        m_Game.MakeMove(m);
-
-        returnvalue = true;
-      }
-    }
-
-    return returnvalue;
-  }
-
-
-  public boolean MakeMoveIsPossible(int x, int y)
-  {
-    if (m_calculating) return false;
-
-    int player = m_Game.GetWhoseTurn();
-    Move m = new Move(x, y, player);
-
-    return m_Game.MoveIsLegal(m);
-  }
-
-
-  public void Undo()
-  {
-    if (UndoIsPossible())
-    {
-      if (m_last_entered_move_score >= 4)
-      while (m_Game.GetScore(Score.WHITE) + m_Game.GetScore(Score.BLACK) >
-        m_last_entered_move_score)
-      {
-        m_Game.TakeBackMove();
-      }
-
-      m_last_entered_move_score = 0;
-    }
-  }
-  
-
-  public boolean UndoIsPossible()
-  {
-    return ! m_calculating && m_last_entered_move_score >= 4;
-  }
-  
-
-  public void TakeBack()
-  {
-    if (TakeBackIsPossible())
-    {
-      m_Game.TakeBackMove();
-
-      if (m_Game.GetScore(Score.WHITE) + m_Game.GetScore(Score.BLACK) <= 4)
-        m_last_entered_move_score = 0;
-      else
-      if (m_Game.GetScore(Score.WHITE) + m_Game.GetScore(Score.BLACK) <=
-          m_last_entered_move_score)
-        m_last_entered_move_score = 0;
-    }
-  }
-  
-
-  public boolean TakeBackIsPossible()
-  {
-    return ! m_calculating &&
-      m_Game.GetScore(Score.WHITE) + m_Game.GetScore(Score.BLACK) > 4;
-  }
-  
-
-  public void SetLevel(int level)
-  {
-    if (SetLevelIsPossible())
-      m_Engine.SetStrength(level);
-  }
-  
-
-  public boolean SetLevelIsPossible()
-  {
-    return ! m_calculating;
-  }
-  
-
-  public void NewGame()
-  {
-    if (NewGameIsPossible())
-    {
-      m_last_entered_move_score = 0;
-      m_Game.Reset();
-    }
-  }
-  
-
-  public boolean NewGameIsPossible()
-  {
-    return ! m_calculating;
-  }
-  
-
-  public void InterruptComputation()
-  {
-    if (InterruptComputationIsPossible())
-      m_Engine.SetInterrupt(true);
-  }
-  
-
-  public boolean InterruptComputationIsPossible()
-  {
-    return m_calculating;
-  }
-  
-
-  private int m_last_entered_move_score = 0;
-  private boolean m_calculating = false;
-  private Engine m_Engine  = new Engine();
-  private Game m_Game = new Game();
-  CommandInterfaceListener m_Listener;
-}
+
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+    
+/**
+ * Implements an interface to Othello.Engine that is directed to
+ * what a user interface might want to do.
+ * <P>
+ * When pondering is on (see SetPondering()) the engine does not sit idle
+ * while the user thinks about a move: after each computed move it guesses
+ * the user's reply (with a quick, shallow search) and computes its answer
+ * to that. If the user then plays the guessed move, the answer is used
+ * instead of starting a new computation. Otherwise the pondering is
+ * interrupted. The pondering is done on threads that all interfaces share
+ * and that are kept apart from the executor's, so that it never keeps
+ * them from computing moves that have been asked for. A guess counts as
+ * right only if the game has come to the very position that was pondered.
+ * <P>
+ * With a position cache (see SetPositionCache()) moves that are computed
+ * without a time limit are remembered, also between games and between
+ * interfaces that share the cache, and a position that has been seen before
+ * (or a mirror image or rotation of it) gets its move at once.
+ */
+
+public class CommandInterface implements Runnable
+{
+  private static final Logger log = Logger.getLogger(CommandInterface.class.getName());
+
+  /**
+   * The strength level of the search that guesses the user's move when
+   * pondering.
+   */
+
+  private static final int PREDICTION_LEVEL = 3;
+
+  public CommandInterface()
+  {
+    this(EngineExecutor.GetShared());
+  }
+
+
+  /**
+   * Creates an interface that computes its moves on the threads of
+   * executor.
+   */
+
+  public CommandInterface(EngineExecutor executor)
+  {
+    log.info("CommandInterface");
+    m_executor = executor;
+  }
+  
+
+  public void run()
+  {
+    //int player = m_Game.GetWhoseTurn();
+
+    Move move = null;
+    boolean searched = false;
+    FutureTask<Move> ponder = m_ponder_task;
+
+    m_ponder_task = null;
+
+    if (ponder != null)
+    {
+      // If the pondering has started (otherwise it is cancelled here) it is
+      // either searching the right position or it has been told to stop,
+      // and either way the engine is busy until it is done:
+
+      if (! ponder.cancel(false))
+      {
+        Move result = WaitForPondering(ponder);
+
+        if (m_ponder_hit && result != null)
+        {
+          move = result;
+          searched = true;
+        }
+      }
+
+      // The engine is free now, and only a stop that was meant for this
+      // computation should be left:
+
+      m_Engine.SetInterrupt(m_interrupted);
+      m_Engine.SetSoftStop(false);
+    }
+
+    if (! searched)
+    {
+      if (m_deadline != 0)
+        move = m_Engine.ComputeMove(m_Game, m_deadline);
+      else
+        move = ComputeCachedMove(m_Game);
+    }
+
+    if (move != null)
+    {
+      m_Game.MakeMove(move);
+
+      if (m_pondering) StartPondering(move.GetPlayer());
+    }
+
+    m_calculating = false;
+
+    CommandInterfaceListener tmpListener = m_Listener;
+    m_Listener = null; // ComputeMove() could be called by
+                       // ComputationFinished() setting m_Listener again
+
+    tmpListener.ComputationFinished(move);
+  }
+
+
+  public int GetSquare(int x, int y)
+  {
+    return m_Game.GetSquare(x, y);
+  }
+
+
+  public int GetScoreWhite()
+  {
+    return m_Game.GetScore(Score.WHITE);
+  }
+
+
+  public int GetScoreBlack()
+  {
+    return m_Game.GetScore(Score.BLACK);
+  }
+
+
+  public int GetLevel()
+  {
+    return m_Engine.GetStrength();
+  }
+
+
+  public int GetWhoseTurn()
+  {
+    return m_Game.GetWhoseTurn();
+  }
+
+
+  public String GetLastMove()
+  {
+    if (m_Game.GetLastMove() == null) return null;
+
+    char[] ch = new char[1];
+    ch[0] = (char) ('A' + m_Game.GetLastMove().GetX() - 1);
+
+    String returnvalue = new String(ch);
+
+    return returnvalue + m_Game.GetLastMove().GetY();
+  }
+
+
+  public boolean MoveIsPossible()
+  {
+    if (m_calculating) return false;
+
+    return m_Game.GetWhoseTurn() != Score.NOBODY;
+  }
+
+
+  /**
+   * Starts computing a move on the executor and calls Listener when it is
+   * made. Returns false (and does not call Listener) if the executor has
+   * too many computations waiting already.
+   */
+
+  public boolean ComputeMove(CommandInterfaceListener Listener)
+  {
+    return ComputeMove(Listener, m_move_time);
+  }
+
+
+  /**
+   * Starts computing a move like ComputeMove() and returns a future that is
+   * completed with the move when it has been made. The future fails with a
+   * CancellationException if the computation is interrupted, with an
+   * IllegalStateException if a move can not be computed now (see
+   * ComputeMoveIsPossible()) and with a RejectedExecutionException if the
+   * executor has too many computations waiting. Cancelling the future (or
+   * making it fail, with orTimeout() for instance) interrupts the
+   * computation.
+   */
+
+  public CompletableFuture<Move> ComputeMoveAsync()
+  {
+    return ComputeMoveAsync(m_move_time);
+  }
+
+
+  /**
+   * The same as ComputeMoveAsync(), but the move must be ready within millis
+   * milliseconds (see SetMoveTime()).
+   */
+
+  public CompletableFuture<Move> ComputeMoveAsync(long millis)
+  {
+    MoveFuture future = new MoveFuture()
+    {
+      void Interrupt() { InterruptComputation(); }
+    };
+
+    if (! ComputeMoveIsPossible())
+    {
+      future.completeExceptionally(new IllegalStateException(
+        "a move can not be computed now"));
+      return future;
+    }
+
+    future.m_started = true;
+
+    if (! ComputeMove(future, millis))
+    {
+      future.m_started = false;
+      future.completeExceptionally(new RejectedExecutionException(
+        "too many computations waiting"));
+    }
+
+    return future;
+  }
+
+
+  private boolean ComputeMove(CommandInterfaceListener Listener, long millis)
+  {
+    m_Listener = Listener;
+
+    m_calculating = true;
+
+    // The time for the move is counted from now, so time spent waiting
+    // for a thread is included:
+
+    if (millis > 0)
+      m_deadline = System.nanoTime() + millis * 1000000;
+    else
+      m_deadline = 0;
+
+    m_interrupted = false;
+
+    if (m_ponder_task != null)
+    {
+      m_ponder_hit = PonderHit();
+
+      // The engine is still pondering, it is stopped unless it was on
+      // the right position. run() waits for it to finish either way:
+
+      if (! m_ponder_hit) m_Engine.SetInterrupt(true);
+    }
+    else
+    {
+      // A stop that came too late for the last computation must not stop
+      // this one:
+
+      m_Engine.SetInterrupt(false);
+      m_Engine.SetSoftStop(false);
+    }
+
+    if (! m_executor.Submit(this))
+    {
+      m_calculating = false;
+      m_Listener = null;
+      return false;
+    }
+
+    return true;
+  }
+
+
+  public boolean ComputeMoveIsPossible()
+  {
+    return ! m_calculating && m_Game.GetWhoseTurn() != Score.NOBODY;
+  }
+
+
+  public boolean MakeMove(int x, int y)
+  {
+    boolean returnvalue = false;
+
+    if (MakeMoveIsPossible(x, y))
+    {
+      int player = m_Game.GetWhoseTurn();
+
+      m_last_entered_move_score =
+        m_Game.GetScore(Score.WHITE) + m_Game.GetScore(Score.BLACK);
+
+      Move m = new Move(x, y, player);
+
+      if (m_Game.MoveIsLegal(m))
+      {
+        m_last_entered_move_score =
+          m_Game.GetScore(Score.WHITE) + m_Game.GetScore(Score.BLACK);
+
+        m_Game.MakeMove(m);
+
+        returnvalue = true;
+      }
+    }
+
+    return returnvalue;
+  }
+
+
+  public boolean MakeMoveIsPossible(int x, int y)
+  {
+    if (m_calculating) return false;
+
+    if (x < 1 || x > 8 || y < 1 || y > 8) return false;
+
+    return (m_Game.GetLegalMoves(m_Game.GetWhoseTurn()) &
+      Bitboard.SquareBit(x, y)) != 0;
+  }
+
+
+  public void Undo()
+  {
+    if (UndoIsPossible())
+    {
+      StopPondering();
+
+      if (m_last_entered_move_score >= 4)
+      while (m_Game.GetScore(Score.WHITE) + m_Game.GetScore(Score.BLACK) >
+        m_last_entered_move_score)
+      {
+        m_Game.TakeBackMove();
+      }
+
+      m_last_entered_move_score = 0;
+    }
+  }
+  
+
+  public boolean UndoIsPossible()
+  {
+    return ! m_calculating && m_last_entered_move_score >= 4;
+  }
+  
+
+  public void TakeBack()
+  {
+    if (TakeBackIsPossible())
+    {
+      StopPondering();
+      m_Game.TakeBackMove();
+
+      if (m_Game.GetScore(Score.WHITE) + m_Game.GetScore(Score.BLACK) <= 4)
+        m_last_entered_move_score = 0;
+      else
+      if (m_Game.GetScore(Score.WHITE) + m_Game.GetScore(Score.BLACK) <=
+          m_last_entered_move_score)
+        m_last_entered_move_score = 0;
+    }
+  }
+  
+
+  public boolean TakeBackIsPossible()
+  {
+    return ! m_calculating &&
+      m_Game.GetScore(Score.WHITE) + m_Game.GetScore(Score.BLACK) > 4;
+  }
+  
+
+  public void SetLevel(int level)
+  {
+    if (SetLevelIsPossible())
+    {
+      StopPondering();
+      m_Engine.SetStrength(level);
+    }
+  }
+  
+
+  public boolean SetLevelIsPossible()
+  {
+    return ! m_calculating;
+  }
+
+
+  /**
+   * Sets the time in milliseconds that a computed move may take, including
+   * the time waiting for the executor. 0 (the default) means that the
+   * engine searches to the depth given by the level, however long it takes.
+   */
+
+  public void SetMoveTime(long millis)
+  {
+    if (SetLevelIsPossible())
+    {
+      StopPondering();
+      m_move_time = millis;
+    }
+  }
+
+
+  public long GetMoveTime()
+  {
+    return m_move_time;
+  }
+  
+
+  public void NewGame()
+  {
+    if (NewGameIsPossible())
+    {
+      StopPondering();
+      m_last_entered_move_score = 0;
+      m_Game.Reset();
+    }
+  }
+  
+
+  public boolean NewGameIsPossible()
+  {
+    return ! m_calculating;
+  }
+  
+
+  public void InterruptComputation()
+  {
+    if (InterruptComputationIsPossible())
+    {
+      m_interrupted = true;
+      m_Engine.SetInterrupt(true);
+    }
+  }
+  
+
+  /**
+   * Tells the computation to complete the search depth it is working on and
+   * make the best move it has found. Only makes a difference when there is
+   * a time limit for the move (see SetMoveTime()).
+   */
+
+  public void StopComputation()
+  {
+    if (InterruptComputationIsPossible())
+      m_Engine.SetSoftStop(true);
+  }
+
+
+  public boolean InterruptComputationIsPossible()
+  {
+    return m_calculating;
+  }
+
+
+  /**
+   * Turns pondering (see the class description) on or off. It is off by
+   * default.
+   */
+
+  public void SetPondering(boolean pondering)
+  {
+    m_pondering = pondering;
+
+    if (! pondering) StopPondering();
+  }
+
+
+  public boolean GetPondering()
+  {
+    return m_pondering;
+  }
+
+
+  /**
+   * Returns true while the engine is pondering, that is computing an answer
+   * to the move it expects the user to make.
+   */
+
+  public boolean IsPondering()
+  {
+    FutureTask<Move> ponder = m_ponder_task;
+
+    return ponder != null && ! ponder.isDone();
+  }
+
+
+  /**
+   * Sets the cache where moves computed without a time limit are stored
+   * and looked up (see class PositionCache). The same cache can be used by
+   * several interfaces. null (the default) means that no cache is used.
+   */
+
+  public void SetPositionCache(PositionCache cache) { m_cache = cache; }
+
+
+  public PositionCache GetPositionCache() { return m_cache; }
+
+
+  /**
+   * Computes the move in g to the depth of the level, or takes it from the
+   * cache if it has been computed before.
+   */
+
+  private Move ComputeCachedMove(Game g)
+  {
+    PositionCache cache = m_cache;
+
+    if (cache == null) return m_Engine.ComputeMove(g);
+
+    int level = m_Engine.GetStrength();
+    Move move = cache.GetMove(g, level);
+
+    if (move == null)
+    {
+      move = m_Engine.ComputeMove(g);
+
+      if (move != null) cache.PutMove(g, level, move);
+    }
+
+    return move;
+  }
+
+
+  /**
+   * Starts guessing the reply to the move that player has just made and
+   * computing the answer to it, on the pondering threads.
+   */
+
+  private void StartPondering(final int player)
+  {
+    int opponent = m_Game.GetWhoseTurn();
+
+    if (opponent == player || opponent == Score.NOBODY) return;
+
+    final Game g = new Game(m_Game);
+    final long millis = m_move_time;
+    final int generation;
+
+    synchronized (this)
+    {
+      generation = ++m_ponder_generation;
+      m_ponder_ready = false;
+    }
+
+    FutureTask<Move> task = new FutureTask<Move>(new Callable<Move>()
+    {
+      public Move call()
+      {
+        Move predicted = PredictMove(g);
+
+        if (predicted == null || ! g.MakeMove(predicted)) return null;
+        if (g.GetWhoseTurn() != player) return null;
+
+        // If the user moves before this is set the pondering is a miss, and
+        // the engine has been told to stop before the search below starts.
+        // If the pondering has been stopped (the game has been changed in
+        // some other way) the position must not be taken for a hit:
+
+        synchronized (CommandInterface.this)
+        {
+          if (generation != m_ponder_generation) return null;
+
+          m_ponder_black = g.GetBits(Score.BLACK);
+          m_ponder_white = g.GetBits(Score.WHITE);
+          m_ponder_player = g.GetWhoseTurn();
+          m_ponder_ready = true;
+        }
+
+        if (millis > 0)
+          return m_Engine.ComputeMove(g, System.nanoTime() + millis * 1000000);
+        else
+          return ComputeCachedMove(g);
+      }
+    });
+
+    m_ponder_hit = false;
+    m_ponder_task = task;
+
+    if (! GetPonderExecutor().Submit(task)) m_ponder_task = null;
+  }
+
+
+  /**
+   * Returns the executor that all interfaces ponder on. Its threads are
+   * kept apart from the executor's so that pondering never delays a move
+   * that has been asked for, and a pondering that is still waiting for a
+   * thread is cancelled when the user moves.
+   */
+
+  private static synchronized EngineExecutor GetPonderExecutor()
+  {
+    if (m_ponder_executor == null)
+    {
+      m_ponder_executor =
+        new EngineExecutor(Runtime.getRuntime().availableProcessors(), 1024);
+    }
+
+    return m_ponder_executor;
+  }
+
+
+  /**
+   * Returns the move the user is expected to make in g, found by a shallow
+   * search. Only called on the pondering threads.
+   */
+
+  private Move PredictMove(Game g)
+  {
+    if (m_predictor == null)
+    {
+      m_predictor = new Engine(PREDICTION_LEVEL);
+      m_predictor.SetTranspositionTableSize(0);
+    }
+
+    return m_predictor.ComputeMove(g);
+  }
+
+
+  /**
+   * Returns true if the game is in the position the engine is pondering
+   * on.
+   */
+
+  private synchronized boolean PonderHit()
+  {
+    return m_ponder_ready &&
+      m_Game.GetBits(Score.BLACK) == m_ponder_black &&
+      m_Game.GetBits(Score.WHITE) == m_ponder_white &&
+      m_Game.GetWhoseTurn() == m_ponder_player;
+  }
+
+
+  /**
+   * Stops the pondering, when the game is changed in some other way than
+   * by a move from the user. The next computation waits for the engine to
+   * finish.
+   */
+
+  private void StopPondering()
+  {
+    synchronized (this)
+    {
+      m_ponder_generation++;
+      m_ponder_ready = false;
+    }
+
+    if (m_ponder_task != null && ! m_ponder_task.cancel(false))
+      m_Engine.SetInterrupt(true);
+
+    m_ponder_hit = false;
+  }
+
+
+  private static Move WaitForPondering(FutureTask<Move> ponder)
+  {
+    try
+    {
+      return ponder.get();
+    }
+    catch (Exception e)
+    {
+      return null;
+    }
+  }
+  
+
+  private int m_last_entered_move_score = 0;
+  private volatile boolean m_calculating = false;
+  private long m_move_time = 0;
+  private long m_deadline = 0;
+  private EngineExecutor m_executor;
+  private volatile boolean m_interrupted = false;
+  private volatile boolean m_pondering = false;
+  private volatile boolean m_ponder_hit = false;
+  private volatile FutureTask<Move> m_ponder_task;
+  private int m_ponder_generation = 0;
+  private boolean m_ponder_ready = false;
+  private long m_ponder_black;
+  private long m_ponder_white;
+  private int m_ponder_player;
+  private static EngineExecutor m_ponder_executor;
+  private Engine m_predictor;
+  private volatile PositionCache m_cache;
+  private Engine m_Engine  = new Engine();
+  private Game m_Game = new Game();
+  volatile CommandInterfaceListener m_Listener;
+}
@@ -0,0 +1,397 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+
+/**
+ * The class EndgameSolver is used by Engine to search positions to the end
+ * of the game when there are few empty squares left. It computes the exact
+ * final result (the number of pieces of the player to move minus the number
+ * of pieces of the opponent, empty squares are not counted) and does nothing
+ * else, which makes it considerably faster than the general search:
+ * <P>
+ * The empty squares are kept in a linked list (ordered so that corners come
+ * first and squares next to corners last), so the search never has to look
+ * at occupied squares.
+ * <P>
+ * With many empty squares left, the moves that leave the opponent with the
+ * fewest possible replies are searched first ("fastest first"), since they
+ * produce cutoffs quickly.
+ * <P>
+ * With fewer empty squares left, moves in regions (quadrants of the board)
+ * with an odd number of empty squares are searched first. Getting the last
+ * move in a region is usually an advantage.
+ * <P>
+ * The last three empty squares are handled by special functions that do
+ * not need any lists at all.
+ */
+
+final class EndgameSolver
+{
+  /**
+   * Fastest first ordering is used when there are at least this many empty
+   * squares left. With fewer, computing the opponent's moves for every move
+   * costs more than it saves.
+   */
+
+  static final int FASTEST_FIRST_EMPTIES = 7;
+
+  private static final int NO_MOVE = -100;
+  private static final int HEAD = 64;
+
+  /**
+   * The order in which the squares are put in the empty square list: corners
+   * first, then edges and the middle, and the squares next to the corners
+   * last.
+   */
+
+  private static final int SQUARE_ORDER[] =
+  {
+     0,  7, 56, 63,
+     2,  5, 16, 23, 40, 47, 58, 61,
+     3,  4, 24, 31, 32, 39, 59, 60,
+    18, 21, 42, 45,
+    19, 20, 26, 29, 34, 37, 43, 44,
+    27, 28, 35, 36,
+    10, 13, 17, 22, 41, 46, 50, 53,
+    11, 12, 25, 30, 33, 38, 51, 52,
+     1,  6,  8, 15, 48, 55, 57, 62,
+     9, 14, 49, 54
+  };
+
+  private Engine m_engine;
+
+  private int m_next[] = new int[65];
+  private int m_prev[] = new int[65];
+  private int m_parity;
+
+  private int m_moves[][] = new int[64][64];
+  private int m_priority[][] = new int[64][64];
+  private long m_flips[][] = new long[64][64];
+
+
+  /**
+   * Creates a solver that counts its nodes in engine and stops when the
+   * search of engine is interrupted.
+   */
+
+  EndgameSolver(Engine engine) { m_engine = engine; }
+
+
+  /**
+   * Returns the final result with perfect play for both players for the
+   * owner of playerbits, who is to move. If the result is less than or equal
+   * to alpha, or greater than or equal to beta, only that is guaranteed
+   * (the value returned is then an upper or lower bound).
+   */
+
+  int Solve(long playerbits, long opponentbits, int alpha, int beta)
+  {
+    long empty = ~(playerbits | opponentbits);
+    int n = 0;
+
+    m_next[HEAD] = HEAD;
+    m_prev[HEAD] = HEAD;
+    m_parity = 0;
+
+    for (int i=0; i < 64; i++)
+    {
+      int sq = SQUARE_ORDER[i];
+
+      if ((empty & (1L << sq)) != 0)
+      {
+        m_prev[sq] = m_prev[HEAD];
+        m_next[sq] = HEAD;
+        m_next[m_prev[HEAD]] = sq;
+        m_prev[HEAD] = sq;
+        m_parity ^= 1 << Quadrant(sq);
+        n++;
+      }
+    }
+
+    return Search(playerbits, opponentbits, Math.max(alpha, -65),
+      Math.min(beta, 65), n);
+  }
+
+
+  private int Search(long playerbits, long opponentbits, int alpha, int beta,
+    int n)
+  {
+    if (n <= 3)
+    {
+      int sq1 = m_next[HEAD];
+      int sq2 = m_next[sq1];
+
+      if (n == 3) return Last3(playerbits, opponentbits, alpha, beta, sq1, sq2,
+        m_next[sq2]);
+      if (n == 2) return Last2(playerbits, opponentbits, alpha, beta, sq1, sq2);
+      if (n == 1) return Last1(playerbits, opponentbits, sq1);
+
+      return Long.bitCount(playerbits) - Long.bitCount(opponentbits);
+    }
+
+    m_engine.CountNode();
+
+    if (m_engine.Aborted()) return 0;
+
+    int best;
+
+    if (n >= FASTEST_FIRST_EMPTIES)
+      best = SearchFastestFirst(playerbits, opponentbits, alpha, beta, n);
+    else
+      best = SearchParity(playerbits, opponentbits, alpha, beta, n);
+
+    if (best == NO_MOVE)
+    {
+      // No possible move, the opponent plays again if he can:
+
+      if (Bitboard.GenerateMoves(opponentbits, playerbits) != 0)
+        return -Search(opponentbits, playerbits, -beta, -alpha, n);
+
+      return Long.bitCount(playerbits) - Long.bitCount(opponentbits);
+    }
+
+    return best;
+  }
+
+
+  private int SearchFastestFirst(long playerbits, long opponentbits,
+    int alpha, int beta, int n)
+  {
+    int moves[] = m_moves[n];
+    int priority[] = m_priority[n];
+    long flips[] = m_flips[n];
+    int number_of_moves = 0;
+
+    for (int sq = m_next[HEAD]; sq != HEAD; sq = m_next[sq])
+    {
+      long f = Bitboard.ComputeFlips(sq, playerbits, opponentbits);
+
+      if (f != 0)
+      {
+        moves[number_of_moves] = sq;
+        flips[number_of_moves] = f;
+        priority[number_of_moves] = -Long.bitCount(Bitboard.GenerateMoves(
+          opponentbits & ~f, playerbits | f | (1L << sq)));
+        number_of_moves++;
+      }
+    }
+
+    int best = NO_MOVE;
+
+    for (int i=0; i < number_of_moves; i++)
+    {
+      // Select the move with the fewest replies among the remaining ones
+      // (the empty square list order decides between equal moves):
+
+      int k = i;
+
+      for (int j=i+1; j < number_of_moves; j++)
+        if (priority[j] > priority[k]) k = j;
+
+      int sq = moves[k];
+      long f = flips[k];
+
+      moves[k] = moves[i];
+      flips[k] = flips[i];
+      priority[k] = priority[i];
+
+      RemoveEmpty(sq);
+      int val = -Search(opponentbits & ~f, playerbits | f | (1L << sq),
+        -beta, -alpha, n-1);
+      RestoreEmpty(sq);
+
+      if (val > best)
+      {
+        best = val;
+
+        if (val > alpha)
+        {
+          alpha = val;
+          if (alpha >= beta) break;
+        }
+      }
+    }
+
+    return best;
+  }
+
+
+  private int SearchParity(long playerbits, long opponentbits, int alpha,
+    int beta, int n)
+  {
+    int best = NO_MOVE;
+
+    // Squares in quadrants with an odd number of empty squares first:
+
+    for (int odd=1; odd >= 0; odd--)
+    for (int sq = m_next[HEAD]; sq != HEAD; sq = m_next[sq])
+    if (((m_parity >> Quadrant(sq)) & 1) == odd)
+    {
+      long f = Bitboard.ComputeFlips(sq, playerbits, opponentbits);
+
+      if (f != 0)
+      {
+        RemoveEmpty(sq);
+        int val = -Search(opponentbits & ~f, playerbits | f | (1L << sq),
+          -beta, -alpha, n-1);
+        RestoreEmpty(sq);
+
+        if (val > best)
+        {
+          best = val;
+
+          if (val > alpha)
+          {
+            alpha = val;
+            if (alpha >= beta) return best;
+          }
+        }
+      }
+    }
+
+    return best;
+  }
+
+
+  /**
+   * Returns the final result for the owner of playerbits (who is to move)
+   * when sq is the only empty square.
+   */
+
+  private int Last1(long playerbits, long opponentbits, int sq)
+  {
+    m_engine.CountNode();
+
+    int score = Long.bitCount(playerbits) - Long.bitCount(opponentbits);
+    int turned = Long.bitCount(Bitboard.ComputeFlips(sq, playerbits,
+      opponentbits));
+
+    if (turned > 0) return score + 2*turned + 1;
+
+    turned = Long.bitCount(Bitboard.ComputeFlips(sq, opponentbits,
+      playerbits));
+
+    if (turned > 0) return score - 2*turned - 1;
+
+    return score;
+  }
+
+
+  /**
+   * Returns the final result for the owner of playerbits (who is to move)
+   * when sq1 and sq2 are the only empty squares.
+   */
+
+  private int Last2(long playerbits, long opponentbits, int alpha, int beta,
+    int sq1, int sq2)
+  {
+    m_engine.CountNode();
+
+    int best = NO_MOVE;
+    long f = Bitboard.ComputeFlips(sq1, playerbits, opponentbits);
+
+    if (f != 0)
+    {
+      best = -Last1(opponentbits & ~f, playerbits | f | (1L << sq1), sq2);
+      if (best >= beta) return best;
+    }
+
+    f = Bitboard.ComputeFlips(sq2, playerbits, opponentbits);
+
+    if (f != 0)
+    {
+      int val = -Last1(opponentbits & ~f, playerbits | f | (1L << sq2), sq1);
+      if (val > best) best = val;
+    }
+
+    if (best != NO_MOVE) return best;
+
+    if (Bitboard.ComputeFlips(sq1, opponentbits, playerbits) != 0 ||
+        Bitboard.ComputeFlips(sq2, opponentbits, playerbits) != 0)
+      return -Last2(opponentbits, playerbits, -beta, -alpha, sq1, sq2);
+
+    return Long.bitCount(playerbits) - Long.bitCount(opponentbits);
+  }
+
+
+  /**
+   * Returns the final result for the owner of playerbits (who is to move)
+   * when sq1, sq2 and sq3 are the only empty squares.
+   */
+
+  private int Last3(long playerbits, long opponentbits, int alpha, int beta,
+    int sq1, int sq2, int sq3)
+  {
+    m_engine.CountNode();
+
+    // A square that is alone in its quadrant is searched first (parity):
+
+    if (Quadrant(sq1) == Quadrant(sq2))
+    {
+      int tmp = sq1; sq1 = sq3; sq3 = tmp;
+    }
+    else if (Quadrant(sq1) == Quadrant(sq3))
+    {
+      int tmp = sq1; sq1 = sq2; sq2 = tmp;
+    }
+
+    int best = NO_MOVE;
+
+    for (int i=0; i < 3; i++)
+    {
+      int sq = i == 0 ? sq1 : i == 1 ? sq2 : sq3;
+      int a = i == 0 ? sq2 : sq1;
+      int b = i == 2 ? sq2 : sq3;
+
+      long f = Bitboard.ComputeFlips(sq, playerbits, opponentbits);
+
+      if (f != 0)
+      {
+        int val = -Last2(opponentbits & ~f, playerbits | f | (1L << sq),
+          -beta, -alpha, a, b);
+
+        if (val > best)
+        {
+          best = val;
+
+          if (val > alpha)
+          {
+            alpha = val;
+            if (alpha >= beta) return best;
+          }
+        }
+      }
+    }
+
+    if (best != NO_MOVE) return best;
+
+    if (Bitboard.ComputeFlips(sq1, opponentbits, playerbits) != 0 ||
+        Bitboard.ComputeFlips(sq2, opponentbits, playerbits) != 0 ||
+        Bitboard.ComputeFlips(sq3, opponentbits, playerbits) != 0)
+      return -Last3(opponentbits, playerbits, -beta, -alpha, sq1, sq2, sq3);
+
+    return Long.bitCount(playerbits) - Long.bitCount(opponentbits);
+  }
+
+
+  private void RemoveEmpty(int sq)
+  {
+    m_next[m_prev[sq]] = m_next[sq];
+    m_prev[m_next[sq]] = m_prev[sq];
+    m_parity ^= 1 << Quadrant(sq);
+  }
+
+
+  private void RestoreEmpty(int sq)
+  {
+    m_next[m_prev[sq]] = sq;
+    m_prev[m_next[sq]] = sq;
+    m_parity ^= 1 << Quadrant(sq);
+  }
+
+
+  private static int Quadrant(int sq) { return ((sq >> 4) & 2) | ((sq >> 2) & 1); }
+}
@@ -1,634 +1,1751 @@
-
-// This code is freely distributable, but may neither be sold nor used or
-// included in any product sold for profit without permission from
-// Mats Luthman.
-
-package Othello.Engine;
-
-
-/**
- * Implements a
- * stack entry that is used by Engine to store pieces that are turned during
- * searching (see ComputeMove()).
- */
-
-class SquareStackEntry
-{
-  public int m_x, m_y;
-
-  public SquareStackEntry() { m_x = 0; m_y = 0; }
-}
-
-
-/**
- * Implements a
- * stack that is used by Engine to store pieces that are turned during
- * searching.
- */
-
-class SquareStack
-{
-  private SquareStackEntry m_squarestack[];
-  private int m_top;
-
-  public SquareStack(int size)
-  {
-    m_squarestack = new SquareStackEntry[size];
-    m_top = 0;
-
-    for (int i=0; i<size; i++) m_squarestack[i] = new SquareStackEntry();
-  }
-
-  public final SquareStackEntry Pop() { return m_squarestack[--m_top]; }
-
-
-  public final void Push(int x, int y)
-  {
-    if (m_squarestack.length <= m_top) grow(m_squarestack.length * 2);
-
-    m_squarestack[m_top].m_x = x;
-    m_squarestack[m_top++].m_y = y;
-  }
-
-
-  private final void grow(int size)
-  {
-    if (m_squarestack.length >= size) return;
-
-    SquareStackEntry tmp_squarestack[];
-    tmp_squarestack = new SquareStackEntry[size];
-
-    int i=0;
-
-    for (i=0; i<m_squarestack.length; i++)
-      tmp_squarestack[i] = m_squarestack[i];
-
-    m_squarestack = tmp_squarestack;
-
-    for (; i<size; i++)
-      m_squarestack[i] = new SquareStackEntry();
-  }
-}
-
-
-/**
- * Used by Engine to store all possible moves
- * at the first level and the values that were calculated for them.
- * This makes it possible to select a random move among those with equal
- * or nearly equal value after the search is completed.
- */
-
-class MoveAndValue
-{
-  public int m_x, m_y, m_value;
-
-  public MoveAndValue(int x, int y, int value)
-  {
-    m_x = x; m_y = y; m_value = value;
-  }
-}
-
-
-/**
-* The class Engine produces moves from a Game object through calls to the
-* function ComputeMove().
-* <P>
-* First of all: this is meant to be a simple example of a game playing
-* program. Not everything is done in the most clever way, particularly not
-* the way the moves are searched, but it is hopefully made in a way that makes
-* it easy to understand. The function ComputeMove2() that does all the work
-* is actually not much more than a hundred lines. Much could be done to
-* make the search faster though, I'm perfectly aware of that. Feel free
-* to experiment.
-* <P>
-* The method used to generate the moves is called minimax tree search with
-* alpha-beta pruning to a fixed depth. In short this means that all possible
-* moves a predefined number of moves ahead are either searched or refuted
-* with a method called alpha-beta pruning. A more thorough explanation of
-* this method could be found at the world wide web at
-* http://yoda.cis.temple.edu:8080/UGAIWWW/lectures96/search/minimax/alpha-beta.html
-* at the time this was written. Searching for "minimax" would also point
-* you to information on this subject. It is probably possible to understand
-* this method by reading the source code though, it is not that complicated.
-* <P>
-* At every leaf node at the search tree, the resulting position is evaluated.
-* Two things are considered when evaluating a position: the number of pieces
-* of each color and at which squares the pieces are located. Pieces at the
-* corners are valuable and give a high value, and having pieces at squares
-* next to a corner is not very good and they give a lower value. In the
-* beginning of a game it is more important to have pieces on "good" squares,
-* but towards the end the total number of pieces of each color is given a
-* higher weight. Other things, like how many legal moves that can be made in a
-* position, and the number of pieces that can never be turned would probably
-* make the program stronger if they were considered in evaluating a position,
-* but that would make things more complicated (this was meant to be very
-* simple example) and would also slow down computation (considerably?).
-*/
-
-public class Engine extends SuperEngine
-{
-  private static final int LARGEINT = 99999;
-  private static final int ILLEGAL_VALUE = 888888;
-  private static final int BC_WEIGHT = 3;
-
-  /**
-   * Holds the current position during the
-   * computation. It is initiated at the start of ComputeMove() and
-   * every move that is made during the search is made on this board. It should
-   * be noted that 1 to 8 is used for the actual board, but 0 and 9 can be
-   * used too (they are always empty). This is practical when turning pieces
-   * when moves are made on the board. Every piece that is put on the board
-   * or turned is saved in the stack m_squarestack (see class SquareStack) so
-   * every move can easily be reversed after the search in a node is completed.
-   */
-
-  private int m_board[][];
-
-  /**
-   * Holds board control values for each square
-   * and is initiated by a call to the function private void SetupBcBoard()
-   * from Engines constructor. It is used in evaluation of positions except
-   * when the game tree is searched all the way to the end of the game.
-   */
-
-  private int m_bc_board[][];
-
-  /**
-   * Holds the number of pieces of each color during the search
-   * (this is faster than counting at every leaf node).
-   */
-
-  private Score m_score;
-
-  /**
-   * Holds the sum of the board control values for each color during the search
-   * (this is faster than counting at every leaf node).
-   */
-
-  private Score m_bc_score;
-
-  /**
-   * A stack that is used by Engine to store pieces that are turned during
-   * searching.
-   */
-
-  private SquareStack m_squarestack;
-  private int m_depth;
-  private int m_coeff;
-  private int m_nodes_searched;
-  private boolean m_exhaustive;
-
-  /**
-   * Used to
-   * speed up the tree search. This goes against the principle of keeping things
-   * simple, but to understand the program you do not need to understand them
-   * at all. They are there to make it possible to throw away moves where
-   * the piece that is played is not adjacent to a piece of opposite color
-   * at an early stage (because they could never be legal). It should be
-   * pointed out that not all moves that pass this test are legal, there will
-   * just be fewer moves that have to be tested in a more time consuming way.
-   */
-
-  private long m_coord_bit[][];
-
-  /**
-   * Used to
-   * speed up the tree search. This goes against the principle of keeping things
-   * simple, but to understand the program you do not need to understand them
-   * at all. They are there to make it possible to throw away moves where
-   * the piece that is played is not adjacent to a piece of opposite color
-   * at an early stage (because they could never be legal). It should be
-   * pointed out that not all moves that pass this test are legal, there will
-   * just be fewer moves that have to be tested in a more time consuming way.
-   */
-
-  private long m_neighbor_bits[][];
-
-  public Engine(int st, int sd) { super(st, sd); SetupBcBoard(); SetupBits(); }
-
-
-  public Engine(int st) { super(st); SetupBcBoard(); SetupBits(); }
-
-
-  public Engine() { super(5); SetupBcBoard(); SetupBits(); }
-
-
-  /**
-   * Calcuates the next move.
-   * @param g An incomplete game from which the next move should be calculated.
-   * @return The calculated move.
-   */
-
-  public Move ComputeMove(Game g)
-  {
-    m_exhaustive = false;
-
-    int player = g.GetWhoseTurn();
-
-    if (player == Score.NOBODY) return null;
-
-    m_score = new Score(g.GetScore(Score.WHITE), g.GetScore(Score.BLACK));
-    if (m_score.GetScore(Score.WHITE) + m_score.GetScore(Score.BLACK) == 4)
-      return ComputeFirstMove(g);
-
-    m_board = new int[10][10];
-    m_squarestack = new SquareStack(200);
-    m_depth = m_strength;
-    if (m_depth == 0) m_depth = 1; // m_strength == 0 is very low strength
-
-    if (m_score.GetScore(Score.WHITE) + m_score.GetScore(Score.BLACK) +
-        m_depth + 4 >= 64)
-      m_depth =
-        64 - m_score.GetScore(Score.WHITE) - m_score.GetScore(Score.BLACK);
-    else if (m_score.GetScore(Score.WHITE) + m_score.GetScore(Score.BLACK) +
-        m_depth + 7 >= 64)
-      m_depth += 3;
-    else if (m_score.GetScore(Score.WHITE) + m_score.GetScore(Score.BLACK) +
-        m_depth + 9 >= 64)
-      m_depth += 2;
-    else if (m_score.GetScore(Score.WHITE) + m_score.GetScore(Score.BLACK) +
-        m_depth + 11 >= 64)
-      m_depth++;
-
-    if (m_score.GetScore(Score.WHITE) + m_score.GetScore(Score.BLACK) +
-        m_depth >= 64) m_exhaustive = true;
-
-    m_coeff =
-      100 - (100*
-        (m_score.GetScore(Score.WHITE) + m_score.GetScore(Score.BLACK) +
-        m_depth - 4))/60;
-
-    m_nodes_searched = 0;
-
-    for (int x=0; x<10; x++)
-    for (int y=0; y<10; y++)
-      m_board[x][y] = Score.NOBODY;
-
-    for (int x=1; x<9; x++)
-    for (int y=1; y<9; y++)
-      m_board[x][y] = g.GetSquare(x, y);
-
-    m_bc_score = new Score(CalcBcScore(Score.WHITE), CalcBcScore(Score.BLACK));
-
-    long playerbits = ComputeOccupiedBits(player);
-    long opponentbits = ComputeOccupiedBits(Score.GetOpponent(player));
-
-    int maxval = -LARGEINT;
-    int max_x = 0;
-    int max_y = 0;
-
-  /**
-   * Used by Engine to store all possible moves
-   * at the first level and the values that were calculated for them.
-   * This makes it possible to select a random move among those with equal
-   * or nearly equal value after the search is completed.
-   */
-
-    MoveAndValue moves[] = new MoveAndValue[60];
-    int number_of_moves = 0;
-    int number_of_maxval = 0;
-
-    SetInterrupt(false);
-
-    // long starttime = System.currentTimeMillis();
-
-    for (int x=1; x<9; x++)
-    for (int y=1; y<9; y++)
-    if (m_board[x][y] == Score.NOBODY &&
-      (m_neighbor_bits[x][y] & opponentbits) != 0)
-    {
-      int val = ComputeMove2(x, y, player, 1, maxval, playerbits,opponentbits);
-
-      if (val != ILLEGAL_VALUE)
-      {
-	moves[number_of_moves++] = new MoveAndValue(x, y, val);
-
-	if (val > maxval)
-	{
-	  maxval = val;
-	  max_x = x;
-	  max_y = y;
-	  number_of_maxval = 1;
-	}
-	else if (val == maxval) number_of_maxval++;
-      }
-
-      if (GetInterrupt()) break;
-    }
-
-    // long endtime = System.currentTimeMillis();
-
-    if (number_of_maxval > 1)
-    {
-      int r = 0;
-
-      // if m_strength == 0, select any move at random:
-
-      if (m_strength != 0)
-        r = GetRandom() % number_of_maxval + 1;
-      else
-	r = GetRandom() % number_of_moves + 1;
-
-      int i;
-
-      for (i=0; i < number_of_moves; i++)
-	if ((m_strength == 0 || moves[i].m_value == maxval) && --r <= 0) break;
-
-      max_x = moves[i].m_x;
-      max_y = moves[i].m_y;
-    }
-
-
-/********
-    System.out.print("Number of pos. with highest score: ");
-    System.out.println(number_of_maxval);
-
-    System.out.print("Nodes searched:     ");
-    System.out.println(m_nodes_searched);
-
-    System.out.print("Total time:         ");
-    System.out.println((endtime - starttime) / 1000.0);
-
-    System.out.print("Time per node (ms): ");
-    System.out.println((float) (endtime-starttime) / (float) m_nodes_searched);
-
-    System.out.print("Position value:     ");
-    if (maxval != -LARGEINT) System.out.println(maxval);
-
-    System.out.println("");
-********/
-
-    if (GetInterrupt()) return null;
-    else if (maxval != -LARGEINT) return new Move(max_x, max_y, player);
-    else return null;
-  }
-
-
-  private Move ComputeFirstMove(Game g)
-  {
-    int r;
-    int player = g.GetWhoseTurn();
-
-    r = GetRandom() % 4 + 1;
-
-    if (player == Score.WHITE)
-    {
-      if (r == 1) return new Move(3, 5, player);
-      else if (r == 2) return new Move(4, 6, player);
-      else if (r == 3) return new Move(5, 3, player);
-      else return new Move(6, 4, player);
-    }
-    else
-    {
-      if (r == 1) return new Move(3, 4, player);
-      else if (r == 2) return new Move(5, 6, player);
-      else if (r == 3) return new Move(4, 3, player);
-      else return new Move(6, 5, player);
-    }
-  }
-
-
-  private final int ComputeMove2(int xplay, int yplay, int player, int level,
-    int cutoffval, long playerbits, long opponentbits)
-  {
-    int number_of_turned = 0;
-    SquareStackEntry mse;
-    int opponent = Score.GetOpponent(player);
-
-    m_nodes_searched++;
-
-    m_board[xplay][yplay] = player;
-    playerbits |= m_coord_bit[xplay][yplay];
-    m_score.ScoreAdd(player, 1);
-    m_bc_score.ScoreAdd(player, m_bc_board[xplay][yplay]);
-
-    ///////////////////
-    // Turn all pieces:
-    ///////////////////
-
-    for (int xinc=-1; xinc<=1; xinc++)
-    for (int yinc=-1; yinc<=1; yinc++)
-    if (xinc != 0 || yinc != 0)
-    {
-      int x, y;
-
-      for (x = xplay+xinc, y = yplay+yinc; m_board[x][y] == opponent;
-           x += xinc, y += yinc)
-        ;
-
-      if (m_board[x][y] == player)
-        for (x -= xinc, y -= yinc; x != xplay || y != yplay;
-             x -= xinc, y -= yinc)
-        {
-          m_board[x][y] = player;
-	  playerbits |= m_coord_bit[x][y];
-	  opponentbits &= ~m_coord_bit[x][y];
-          m_squarestack.Push(x, y);
-          m_bc_score.ScoreAdd(player, m_bc_board[x][y]);
-          m_bc_score.ScoreSubtract(opponent, m_bc_board[x][y]);
-          number_of_turned++;
-        }
-    }
-
-    int retval = -LARGEINT;
-
-    if (number_of_turned > 0)
-    {
-      //////////////
-      // Legal move:
-      //////////////
-
-      m_score.ScoreAdd(player, number_of_turned);
-      m_score.ScoreSubtract(opponent, number_of_turned);
-
-      if (level >= m_depth) retval = EvaluatePosition(player); // Terminal node
-      else
-      {
-	int maxval = TryAllMoves(opponent, level, cutoffval, opponentbits,
-          playerbits);
-
-        if (maxval != -LARGEINT) retval = -maxval;
-        else
-	{
-	  ///////////////////////////////////////////////////////////////
-	  // No possible move for the opponent, it is players turn again:
-	  ///////////////////////////////////////////////////////////////
-
-	  retval= TryAllMoves(player, level, -LARGEINT, playerbits,
-            opponentbits);
-
-	  if (retval == -LARGEINT)
-	  {
-	    ///////////////////////////////////////////////
-	    // No possible move for anybody => end of game:
-	    ///////////////////////////////////////////////
-
-	    int finalscore =
-	      m_score.GetScore(player) - m_score.GetScore(opponent);
-
-	    if (m_exhaustive) retval = finalscore;
-	    else
-	    {
-	      // Take a sure win and avoid a sure loss (may not be optimal):
-
-	      if (finalscore > 0) retval = LARGEINT - 65 + finalscore;
-	      else if (finalscore < 0) retval = -(LARGEINT - 65 + finalscore);
-	      else retval = 0;
-	    }
-	  }
-	}
-      }
-
-      m_score.ScoreAdd(opponent, number_of_turned);
-      m_score.ScoreSubtract(player, number_of_turned);
-    }
-
-    /////////////////
-    // Restore board:
-    /////////////////
-
-    for (int i = number_of_turned; i > 0; i--)
-    {
-      mse = m_squarestack.Pop();
-      m_bc_score.ScoreAdd(opponent, m_bc_board[mse.m_x][mse.m_y]);
-      m_bc_score.ScoreSubtract(player, m_bc_board[mse.m_x][mse.m_y]);
-      m_board[mse.m_x][mse.m_y] = opponent;
-    }
-
-    m_board[xplay][yplay] = Score.NOBODY;
-    m_score.ScoreSubtract(player, 1);
-    m_bc_score.ScoreSubtract(player, m_bc_board[xplay][yplay]);
-
-    if (number_of_turned < 1 || GetInterrupt()) return ILLEGAL_VALUE;
-    else return retval;
-  }
-
-
-  private final int TryAllMoves(int opponent, int level, int cutoffval,
-    long opponentbits, long playerbits)
-  {
-    int maxval = -LARGEINT;
-
-    for (int x=1; x<9; x++)
-    {
-      for (int y=1; y<9; y++)
-      if (m_board[x][y] == Score.NOBODY &&
-        (m_neighbor_bits[x][y] & playerbits) != 0)
-      {
-	int val = ComputeMove2(x, y, opponent, level+1, maxval, opponentbits,
-          playerbits);
-
-	if (val != ILLEGAL_VALUE && val > maxval)
-	{
-	  maxval = val;
-	  if (maxval > -cutoffval || GetInterrupt()) break;
-	}
-      }
-
-      if (maxval > -cutoffval || GetInterrupt()) break;
-    }
-
-    if (GetInterrupt()) return -LARGEINT;
-    return maxval;
-  }
-
-
-  private final int EvaluatePosition(int player)
-  {
-    int retval;
-
-    int opponent = Score.GetOpponent(player);
-    int score_player = m_score.GetScore(player);
-    int score_opponent = m_score.GetScore(opponent);
-
-    if (m_exhaustive) retval = score_player - score_opponent;
-    else
-    {
-      retval = (100-m_coeff) *
-	(m_score.GetScore(player) - m_score.GetScore(opponent)) +
-	m_coeff * BC_WEIGHT *
-	(m_bc_score.GetScore(player)-m_bc_score.GetScore(opponent));
-    }
-
-    return retval;
-  }
-
-
-  private void SetupBcBoard()
-  {
-    m_bc_board = new int[9][9];
-
-    for (int i=1; i < 9; i++)
-    for (int j=1; j < 9; j++)
-    {
-      if (i == 2 || i == 7) m_bc_board[i][j] = -2; else m_bc_board[i][j] = 0;
-      if (j == 2 || j == 7) m_bc_board[i][j] -= 2;
-    }
-
-    m_bc_board[1][1] = 20;
-    m_bc_board[8][1] = 20;
-    m_bc_board[1][8] = 20;
-    m_bc_board[8][8] = 20;
-
-    m_bc_board[1][2] = -2;
-    m_bc_board[2][1] = -2;
-    m_bc_board[1][7] = -2;
-    m_bc_board[7][1] = -2;
-    m_bc_board[8][2] = -2;
-    m_bc_board[2][8] = -2;
-    m_bc_board[8][7] = -2;
-    m_bc_board[7][8] = -2;
-  }
-
-
-  private void SetupBits()
-  {
-    m_coord_bit = new long[9][9];
-    m_neighbor_bits = new long[9][9];
-
-    long bits = 1;
-
-    for (int i=1; i < 9; i++)
-    for (int j=1; j < 9; j++)
-    {
-      m_coord_bit[i][j] = bits;
-      bits *= 2;
-    }
-
-    for (int i=1; i < 9; i++)
-    for (int j=1; j < 9; j++)
-    {
-      m_neighbor_bits[i][j] = 0;
-
-      for (int xinc=-1; xinc<=1; xinc++)
-      for (int yinc=-1; yinc<=1; yinc++)
-      if (xinc != 0 || yinc != 0)
-	if (i + xinc > 0 && i + xinc < 9 && j + yinc > 0 && j + yinc < 9)
-	  m_neighbor_bits[i][j] |= m_coord_bit[i + xinc][j + yinc];
-    }
-  }
-
-
-  private final int CalcBcScore(int player)
-  {
-    int sum = 0;
-
-    for (int i=1; i < 9; i++)
-    for (int j=1; j < 9; j++)
-      if (m_board[i][j] == player) sum += m_bc_board[i][j];
-
-    return sum;
-  }
-
-
-  private long ComputeOccupiedBits(int player)
-  {
-    long retval = 0;
-
-    for (int i=1; i < 9; i++)
-    for (int j=1; j < 9; j++)
-      if (m_board[i][j] == player) retval |= m_coord_bit[i][j];
-
-    return retval;
-  }
-}
+
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Used by Engine to store all possible moves
+ * at the first level and the values that were calculated for them.
+ * This makes it possible to select a random move among those with equal
+ * or nearly equal value after the search is completed.
+ */
+
+class MoveAndValue
+{
+  public int m_x, m_y, m_value;
+
+  public MoveAndValue(int x, int y, int value)
+  {
+    m_x = x; m_y = y; m_value = value;
+  }
+}
+
+
+/**
+* The class Engine produces moves from a Game object through calls to the
+* function ComputeMove().
+* <P>
+* First of all: this is meant to be a simple example of a game playing
+* program. Not everything is done in the most clever way, particularly not
+* the way the moves are searched, but it is hopefully made in a way that makes
+* it easy to understand. The function ComputeMove2() that does all the work
+* is actually not much more than a hundred lines. Much could be done to
+* make the search faster though, I'm perfectly aware of that. Feel free
+* to experiment.
+* <P>
+* During the search positions are represented as two bitboards (see class
+* Bitboard), one 64 bit integer for the pieces of each color, so making a
+* move is a few logical operations and taking it back again is just a matter
+* of returning to the two integers that were there before.
+* <P>
+* The method used to generate the moves is called minimax tree search with
+* alpha-beta pruning to a fixed depth. In short this means that all possible
+* moves a predefined number of moves ahead are either searched or refuted
+* with a method called alpha-beta pruning. A more thorough explanation of
+* this method could be found at the world wide web at
+* http://yoda.cis.temple.edu:8080/UGAIWWW/lectures96/search/minimax/alpha-beta.html
+* at the time this was written. Searching for "minimax" would also point
+* you to information on this subject. It is probably possible to understand
+* this method by reading the source code though, it is not that complicated.
+* <P>
+* At every leaf node at the search tree, the resulting position is evaluated.
+* The number of pieces of each color and at which squares the pieces are
+* located are considered when evaluating a position. Pieces at the
+* corners are valuable and give a high value, and having pieces at squares
+* next to a corner is not very good and they give a lower value. In the
+* beginning of a game it is more important to have pieces on "good" squares,
+* but towards the end the total number of pieces of each color is given a
+* higher weight. Together with the squares, the number of legal moves of each
+* player (mobility), the number of empty squares next to the pieces of the
+* opponent (potential mobility) and the number of own pieces next to empty
+* squares (frontier pieces, which are bad) are considered. Finally, pieces
+* that can never be turned (edge pieces connected to a corner) are given a
+* high value through all the game. With the bitboards all of these are
+* computed with a few shifts and masks, so they make the evaluation only
+* a little slower, and the program a lot stronger.
+* <P>
+* Instead of these hand made values, positions can be evaluated with tables
+* of weights for groups of squares that are trained from games (see
+* SetPatternEvaluator() and class PatternEvaluator).
+* <P>
+* The search can also be made selective (see SetProbCut() and class
+* ProbCut): a shallow search of a position often shows that a deep search
+* would be far outside the window, and then the deep search is skipped.
+* This misses a move now and then, but the time that is saved lets the
+* search go deeper.
+*/
+
+public class Engine extends SuperEngine
+{
+  private static final int LARGEINT = 99999;
+  private static final int ILLEGAL_VALUE = 888888;
+  private static final int BC_WEIGHT = 3;
+  private static final int MOBILITY_WEIGHT = 6;
+  private static final int POTENTIAL_MOBILITY_WEIGHT = 2;
+  private static final int FRONTIER_WEIGHT = 2;
+  private static final int STABLE_WEIGHT = 4;
+
+  /**
+   * Positions closer to the leaves than this are not stored in the
+   * transposition table (the bookkeeping costs more than searching them).
+   */
+
+  private static final int TT_MIN_DEPTH = 2;
+  private static final int ASPIRATION_WINDOW = 400;
+  private static final int PROBCUT_LIMIT = LARGEINT / 2;
+
+  private static final int MAX_LEVELS = 64;
+  private static final int MAX_HISTORY = 1 << 16;
+  private static final int KILLER_PRIORITY = Integer.MAX_VALUE - 1;
+
+  /**
+   * Holds board control values for each square
+   * and is initiated by a call to the function private void SetupBcBoard()
+   * from Engines constructor. It is used in evaluation of positions except
+   * when the game tree is searched all the way to the end of the game.
+   */
+
+  private int m_bc_board[][];
+
+  /**
+   * The board control values in m_bc_board grouped by value: m_bc_masks[i]
+   * holds the squares that have the value m_bc_values[i]. This makes it
+   * possible to compute the board control value for all the pieces of one
+   * color with one bit count per distinct value instead of looking at every
+   * square.
+   */
+
+  private int m_bc_values[];
+  private long m_bc_masks[];
+
+  /**
+   * Used to decide in which order the moves are searched in TryAllMoves().
+   * Alpha-beta pruning cuts off more of the tree the earlier the best move
+   * is searched. m_move_list and m_move_priority hold the moves for each
+   * level and their priorities, m_killers holds the two moves that most
+   * recently caused cutoffs at each level, m_history holds, for each player
+   * and square, how often (and how far from the leaves) a move at the square
+   * has caused a cutoff and m_static_priority holds a priority for each
+   * square based on its board control value.
+   */
+
+  private int m_move_list[][] = new int[MAX_LEVELS][64];
+  private int m_move_priority[][] = new int[MAX_LEVELS][64];
+  private int m_killers[][] = new int[MAX_LEVELS][2];
+  private int m_history[][] = new int[3][64];
+  private int m_static_priority[];
+
+  private int m_depth;
+  private int m_coeff;
+  private boolean m_exhaustive;
+
+  /**
+   * Counters for the statistics of the search (see SearchStats).
+   * m_completed_depth is the depth of the deepest search that was completed.
+   */
+
+  private long m_nodes_searched;
+  private long m_cutoffs;
+  private long m_tt_probes;
+  private long m_tt_hits;
+  private int m_completed_depth;
+
+  /**
+   * Used when ComputeMove() is called with a time limit. m_deadline is the
+   * time (as returned by System.nanoTime()) when the move must be ready,
+   * m_timecontrol is set when the clock should be checked (which is when
+   * there is a completed search to fall back on) and m_timeout is set when
+   * the time has run out. m_stopped is set when SetInterrupt() has been
+   * called. The interrupt flag and the clock are only read every 1024 nodes
+   * (see CountNode()), so the search itself only tests these two fields.
+   */
+
+  private long m_deadline;
+  private boolean m_timecontrol;
+  private boolean m_timeout;
+  private boolean m_stopped;
+
+  /**
+   * Remembers the results of positions that have already been searched (see
+   * class TranspositionTable). It is created by ComputeMove() the first time
+   * it is needed, with the size m_tt_bytes, unless a table that is shared
+   * with other engines has been set (m_shared_tt). The keys are xor:ed with
+   * m_tt_context, which depends on how positions are evaluated, and the
+   * values are stored with m_tt_tag (see SetEvaluationContext()).
+   */
+
+  private TranspositionTable m_tt;
+  private long m_tt_bytes = 4 << 20;
+  private SharedTranspositionTable m_shared_tt;
+  private long m_tt_context;
+  private int m_tt_tag;
+
+  /**
+   * Searches the last m_solver_empties moves of the game when the search
+   * goes all the way to the end of the game (see class EndgameSolver).
+   */
+
+  private EndgameSolver m_solver;
+  private int m_solver_empties = 20;
+
+  /**
+   * Moves that are played without searching early in the game (see
+   * SetOpeningBook()).
+   */
+
+  private OpeningBook m_book;
+
+  /**
+   * Evaluates positions with trained weights if it is set (see
+   * SetPatternEvaluator()).
+   */
+
+  private PatternEvaluator m_patterns;
+
+  /**
+   * Makes the search selective if it is set (see SetProbCut()).
+   */
+
+  private ProbCut m_probcut;
+
+  /**
+   * Used to search the moves at the first level on several threads (see
+   * SetThreads()). Each thread searches with its own Engine in m_workers,
+   * so that the search state (move lists, killer moves and history table)
+   * is not shared, while the transposition table is shared by all of them.
+   * m_master is the engine whose interrupt flag the search obeys (the
+   * engine itself, except for the workers).
+   */
+
+  private int m_threads = 1;
+  private ForkJoinPool m_pool;
+  private Engine m_workers[];
+  private Engine m_master = this;
+
+  public Engine(int st, int sd) { super(st, sd); SetupBcBoard(); SetupBcMasks(); }
+
+
+  public Engine(int st) { super(st); SetupBcBoard(); SetupBcMasks(); }
+
+
+  public Engine() { super(5); SetupBcBoard(); SetupBcMasks(); }
+
+
+  /**
+   * Sets the amount of memory (in bytes) that the transposition table may
+   * use. 0 means that no transposition table is used.
+   */
+
+  public void SetTranspositionTableSize(long bytes)
+  {
+    m_tt_bytes = bytes;
+    m_tt = null;
+    m_shared_tt = null;
+  }
+
+
+  /**
+   * Gets the amount of memory (in bytes) that the transposition table may use.
+   */
+
+  public long GetTranspositionTableSize() { return m_tt_bytes; }
+
+
+  /**
+   * Makes the engine use table as its transposition table, instead of one of
+   * its own (null goes back to a table of its own, with the size given by
+   * SetTranspositionTableSize()). The same table can be used by many
+   * engines at the same time.
+   */
+
+  public void SetSharedTranspositionTable(SharedTranspositionTable table)
+  {
+    // Setting the same table again changes nothing (so an engine that has
+    // a table of its own keeps it when null is set):
+
+    if (table == m_shared_tt) return;
+
+    m_shared_tt = table;
+    m_tt = table != null ? table.GetTable() : null;
+  }
+
+
+  /**
+   * Gets the shared transposition table (null if the engine has a table of
+   * its own).
+   */
+
+  public SharedTranspositionTable GetSharedTranspositionTable()
+  {
+    return m_shared_tt;
+  }
+
+
+  /**
+   * Sets the number of empty squares from which the endgame solver is used
+   * when the search reaches the end of the game (0 means that the solver
+   * is never used).
+   */
+
+  public void SetEndgameSolverEmpties(int empties)
+  {
+    m_solver_empties = empties;
+  }
+
+
+  /**
+   * Gets the number of empty squares from which the endgame solver is used.
+   */
+
+  public int GetEndgameSolverEmpties() { return m_solver_empties; }
+
+
+  /**
+   * Sets the opening book. As long as the position is in the book, a move
+   * from the book is played instead of searching. null means that no book is
+   * used (which is the default).
+   */
+
+  public void SetOpeningBook(OpeningBook book) { m_book = book; }
+
+
+  /**
+   * Gets the opening book.
+   */
+
+  public OpeningBook GetOpeningBook() { return m_book; }
+
+
+  /**
+   * Sets the evaluator with trained pattern weights that is used to
+   * evaluate positions instead of the board control values, mobility and
+   * stable pieces (see class PatternEvaluator). null means that the built in
+   * evaluation is used (which is the default).
+   */
+
+  public void SetPatternEvaluator(PatternEvaluator evaluator)
+  {
+    m_patterns = evaluator;
+  }
+
+
+  /**
+   * Gets the pattern evaluator.
+   */
+
+  public PatternEvaluator GetPatternEvaluator() { return m_patterns; }
+
+
+  /**
+   * Sets the parameters that make the search selective (see class
+   * ProbCut). Positions where a shallow search predicts that a deeper one
+   * would be outside the window are not searched deeper. null means that
+   * everything is searched to the full depth (which is the default). The
+   * search is never selective when it goes all the way to the end of the
+   * game.
+   */
+
+  public void SetProbCut(ProbCut probcut) { m_probcut = probcut; }
+
+
+  /**
+   * Gets the ProbCut parameters.
+   */
+
+  public ProbCut GetProbCut() { return m_probcut; }
+
+
+  /**
+   * Sets the number of threads that are used to search. When more than one
+   * thread is used, the best move from the previous search (or the first
+   * move) is searched first, and then the rest of the moves are divided
+   * among the threads, which share the best value found so far (and the
+   * transposition table) to cut off the search.
+   */
+
+  public void SetThreads(int threads)
+  {
+    if (m_pool != null) m_pool.shutdown();
+
+    m_threads = Math.max(threads, 1);
+    m_pool = null;
+    m_workers = null;
+  }
+
+
+  /**
+   * Gets the number of threads that are used to search.
+   */
+
+  public int GetThreads() { return m_threads; }
+
+
+  /**
+   * Calcuates the next move.
+   * @param g An incomplete game from which the next move should be calculated.
+   * @return The calculated move.
+   */
+
+  public Move ComputeMove(Game g)
+  {
+    return ComputeMove(g, false, 0);
+  }
+
+
+  /**
+   * Calculates the next move within a time limit. The search is deepened one
+   * level at a time (starting at depth 1 and continuing until the end of the
+   * game is reached, regardless of the strength level) and when the time is
+   * up the move from the deepest search that was completed is returned. The
+   * moves are searched in the order of their values from the previous
+   * iteration, so the best move so far is always searched first.
+   * @param g An incomplete game from which the next move should be calculated.
+   * @param deadline The time (a value of System.nanoTime()) when the move
+   * must be ready.
+   * @return The calculated move (null only if SetInterrupt() is called).
+   */
+
+  public Move ComputeMove(Game g, long deadline)
+  {
+    return ComputeMove(g, true, deadline);
+  }
+
+
+  /**
+   * Computes the move with SearchMove() and reports the statistics of the
+   * search (see SuperEngine.SearchCompleted()).
+   */
+
+  private Move ComputeMove(Game g, boolean timecontrol, long deadline)
+  {
+    long starttime = System.nanoTime();
+
+    ResetStatistics();
+
+    Move move = SearchMove(g, timecontrol, deadline);
+
+    // A stop only applies to the call to ComputeMove() that it was given
+    // during:
+
+    SetInterrupt(false);
+    SetSoftStop(false);
+
+    SearchCompleted(new SearchStats(move, m_completed_depth, m_nodes_searched,
+      m_cutoffs, m_tt_probes, m_tt_hits, System.nanoTime() - starttime,
+      move != null && m_nodes_searched == 0, m_stopped, m_timeout));
+
+    return move;
+  }
+
+
+  /**
+   * Computes the value of every legal move in the position in g, searching
+   * to the depth of the strength level (without the opening book). Unlike
+   * ComputeMove(), which only has to find out which move is the best, every
+   * move is searched until its value is exact and not just a bound.
+   * @param g An incomplete game with the position to analyze.
+   * @return The moves, the best first (an empty array if the game is over),
+   * or null if SetInterrupt() was called.
+   */
+
+  public AnalyzedMove[] AnalyzeMoves(Game g)
+  {
+    return AnalyzeMoves(g, 64);
+  }
+
+
+  /**
+   * Computes the n best moves in the position in g with their exact values
+   * and principal variations (the moves both players are expected to make
+   * after them, as far as the search looked ahead), searching to the depth
+   * of the strength level.
+   * <P>
+   * This is done in a single search that is deepened one level at a time,
+   * like ComputeMove() with a time limit. Each move is searched with the
+   * value of the n:th best move so far as cutoff value, so the moves that
+   * can not be among the n best are cut off just as ComputeMove() cuts off
+   * the moves that can not be the best one. The principal variations are
+   * found afterwards by following the moves with the expected values down
+   * the tree, which mostly finds results in the transposition table.
+   * @param g An incomplete game with the position to analyze.
+   * @param n The number of moves to return.
+   * @return The n best moves (fewer if there are fewer legal moves), the best
+   * first, or null if SetInterrupt() was called.
+   */
+
+  public AnalyzedMove[] AnalyzeMoves(Game g, int n)
+  {
+    long starttime = System.nanoTime();
+    int player = g.GetWhoseTurn();
+
+    if (player == Score.NOBODY || n < 1) return new AnalyzedMove[0];
+
+    ResetStatistics();
+
+    int pieces = g.GetScore(Score.WHITE) + g.GetScore(Score.BLACK);
+    int maxdepth = ComputeDepth(pieces);
+    long playerbits = g.GetBits(player);
+    long opponentbits = g.GetBits(Score.GetOpponent(player));
+
+    m_timecontrol = false;
+
+    long key = StartSearch(g, player);
+    MoveAndValue moves[] = new MoveAndValue[60];
+    int number_of_moves = GenerateRootMoves(playerbits, opponentbits, moves);
+    boolean exact[] = new boolean[64];
+    int best[] = new int[n + 1];
+
+    for (m_depth = 1; m_depth <= maxdepth && ! Aborted(); m_depth++)
+    {
+      m_exhaustive = pieces + m_depth >= 64;
+      m_coeff = 100 - (100*(pieces + m_depth - 4))/60;
+      SetEvaluationContext();
+
+      // best[] holds the values of the n best moves so far, the best first:
+
+      int found = 0;
+
+      for (int i=0; i < number_of_moves && ! Aborted(); i++)
+      {
+        PollStop();
+
+        int sq = Bitboard.Square(moves[i].m_x, moves[i].m_y);
+        int cutoffval = found < n ? -LARGEINT : best[n-1];
+        int val = i == 0 ?
+          ComputeMove2(sq, player, 1, cutoffval, LARGEINT, playerbits,
+            opponentbits, key) :
+          SearchNullWindow(sq, player, 1, cutoffval, LARGEINT, playerbits,
+            opponentbits, key);
+
+        moves[i].m_value = val;
+        exact[sq] = val > cutoffval;
+
+        if (val > cutoffval)
+        {
+          int j;
+
+          for (j = Math.min(found, n); j > 0 && best[j-1] < val; j--)
+            best[j] = best[j-1];
+
+          best[j] = val;
+          found++;
+        }
+      }
+
+      SortMoves(moves, number_of_moves);
+    }
+
+    m_depth--;
+
+    if (GetInterrupt()) m_stopped = true;
+
+    AnalyzedMove result[] = null;
+
+    if (! m_stopped)
+    {
+      ArrayList<AnalyzedMove> list = new ArrayList<AnalyzedMove>();
+
+      // Moves that were cut off have values that are not greater than the
+      // values of n moves that were not:
+
+      for (int i=0; i < number_of_moves && list.size() < n; i++)
+      {
+        int sq = Bitboard.Square(moves[i].m_x, moves[i].m_y);
+
+        if (! exact[sq]) continue;
+
+        ArrayList<Move> pv = new ArrayList<Move>();
+
+        FindPrincipalVariation(sq, player, 1, moves[i].m_value, playerbits,
+          opponentbits, key, pv);
+
+        list.add(new AnalyzedMove(pv.get(0), moves[i].m_value, m_depth,
+          m_exhaustive, pv.toArray(new Move[pv.size()])));
+      }
+
+      if (! m_stopped)
+      {
+        result = list.toArray(new AnalyzedMove[list.size()]);
+        m_completed_depth = m_depth;
+      }
+    }
+
+    SetInterrupt(false);
+    SetSoftStop(false);
+
+    SearchCompleted(new SearchStats(
+      result != null && result.length > 0 ? result[0].GetMove() : null,
+      m_completed_depth, m_nodes_searched, m_cutoffs, m_tt_probes, m_tt_hits,
+      System.nanoTime() - starttime, false, m_stopped, false));
+
+    return result;
+  }
+
+
+  /**
+   * Adds the move sq for player (at level level, with the exact value value
+   * for player) to pv, followed by the moves that lead to that value. At each
+   * level the moves are searched with a window just around the value, which
+   * cuts them off quickly unless they have the value that is looked for.
+   */
+
+  private void FindPrincipalVariation(int sq, int player, int level,
+    int value, long playerbits, long opponentbits, long key,
+    List<Move> pv)
+  {
+    pv.add(new Move(Bitboard.SquareX(sq), Bitboard.SquareY(sq), player));
+
+    if (level >= m_depth) return;
+
+    long flips = Bitboard.ComputeFlips(sq, playerbits, opponentbits);
+
+    playerbits |= flips | (1L << sq);
+    opponentbits &= ~flips;
+    key = TranspositionTable.UpdateKey(key, player, sq, flips);
+
+    // The opponent moves next, unless the opponent has to pass:
+
+    int mover = Score.GetOpponent(player);
+    long moverbits = opponentbits;
+    long otherbits = playerbits;
+    int target = -value;
+    long legal = Bitboard.GenerateMoves(moverbits, otherbits);
+
+    if (legal == 0)
+    {
+      mover = player;
+      moverbits = playerbits;
+      otherbits = opponentbits;
+      target = value;
+      key = TranspositionTable.PassKey(key);
+      legal = Bitboard.GenerateMoves(moverbits, otherbits);
+    }
+
+    for (; legal != 0 && ! Aborted(); legal &= legal - 1)
+    {
+      int next = Long.numberOfTrailingZeros(legal);
+
+      if (ComputeMove2(next, mover, level+1, target-1, target+1, moverbits,
+            otherbits, key) == target)
+      {
+        FindPrincipalVariation(next, mover, level+1, target, moverbits,
+          otherbits, key, pv);
+        return;
+      }
+    }
+  }
+
+
+  /**
+   * Resets the counters for the statistics of the search and the flags that
+   * stop it.
+   */
+
+  private void ResetStatistics()
+  {
+    m_nodes_searched = 0;
+    m_cutoffs = 0;
+    m_tt_probes = 0;
+    m_tt_hits = 0;
+    m_completed_depth = 0;
+    m_timeout = false;
+    m_stopped = false;
+  }
+
+
+  /**
+   * Prepares the transposition table and the move ordering for a search
+   * from the position in g, and returns the transposition table key of the
+   * position.
+   */
+
+  private long StartSearch(Game g, int player)
+  {
+    if (m_tt == null && m_tt_bytes > 0)
+      m_tt = new TranspositionTable(m_tt_bytes);
+
+    // A shared table is advanced by its owner:
+
+    if (m_tt != null && m_shared_tt == null) m_tt.NewSearch();
+
+    ClearMoveOrdering();
+
+    if (m_workers != null)
+      for (int i=0; i < m_workers.length; i++) m_workers[i].ClearMoveOrdering();
+
+    return TranspositionTable.ComputeKey(g.GetBits(Score.WHITE),
+      g.GetBits(Score.BLACK), player);
+  }
+
+
+  /**
+   * Stores the legal moves of the owner of playerbits in moves[] and
+   * returns the number of them.
+   */
+
+  private static int GenerateRootMoves(long playerbits, long opponentbits,
+    MoveAndValue moves[])
+  {
+    int number_of_moves = 0;
+
+    for (long legal = Bitboard.GenerateMoves(playerbits, opponentbits);
+         legal != 0; legal &= legal - 1)
+    {
+      int sq = Long.numberOfTrailingZeros(legal);
+
+      moves[number_of_moves++] =
+        new MoveAndValue(Bitboard.SquareX(sq), Bitboard.SquareY(sq), 0);
+    }
+
+    return number_of_moves;
+  }
+
+
+  private Move SearchMove(Game g, boolean timecontrol, long deadline)
+  {
+    int player = g.GetWhoseTurn();
+
+    if (player == Score.NOBODY) return null;
+
+    int pieces = g.GetScore(Score.WHITE) + g.GetScore(Score.BLACK);
+
+    if (m_book != null)
+    {
+      Move move = m_book.GetMove(g, GetRandom());
+
+      if (move != null) return move;
+    }
+
+    if (pieces == 4) return ComputeFirstMove(g);
+
+    int maxdepth = timecontrol ? 64 - pieces : ComputeDepth(pieces);
+
+    m_deadline = deadline;
+    m_timecontrol = false;
+
+    long playerbits = g.GetBits(player);
+    long opponentbits = g.GetBits(Score.GetOpponent(player));
+    long key = StartSearch(g, player);
+
+  /**
+   * Used by Engine to store all possible moves
+   * at the first level and the values that were calculated for them.
+   * This makes it possible to select a random move among those with equal
+   * or nearly equal value after the search is completed.
+   */
+
+    MoveAndValue moves[] = new MoveAndValue[60];
+    int number_of_moves = GenerateRootMoves(playerbits, opponentbits, moves);
+
+    Move bestmove = null;
+
+    for (m_depth = timecontrol ? 1 : maxdepth; m_depth <= maxdepth; m_depth++)
+    {
+      m_exhaustive = pieces + m_depth >= 64;
+      m_coeff = 100 - (100*(pieces + m_depth - 4))/60;
+      SetEvaluationContext();
+
+      // After the first iteration the value is not likely to change much, so
+      // the search starts with a window around the value of the previous
+      // iteration (an aspiration window), which cuts off more. If the value
+      // turns out to be outside the window, it is searched again without:
+
+      int alpha = -LARGEINT;
+      int beta = LARGEINT;
+
+      if (timecontrol && m_depth > 1 && ! m_exhaustive)
+      {
+        alpha = moves[0].m_value - ASPIRATION_WINDOW;
+        beta = moves[0].m_value + ASPIRATION_WINDOW;
+      }
+
+      Move move = SearchRoot(player, moves, number_of_moves, alpha, beta,
+        playerbits, opponentbits, key);
+
+      if (alpha != -LARGEINT && ! Aborted())
+      {
+        int maxval = GetMaxValue(moves, number_of_moves);
+
+        if (maxval <= alpha || maxval >= beta)
+          move = SearchRoot(player, moves, number_of_moves, -LARGEINT,
+            LARGEINT, playerbits, opponentbits, key);
+      }
+
+      if (GetInterrupt()) m_stopped = true;
+      if (m_stopped) return null;
+      if (m_timeout) break;
+
+      bestmove = move;
+      m_completed_depth = m_depth;
+
+      if (timecontrol)
+      {
+        // From now on there is a move to fall back on if time runs out:
+
+        m_timecontrol = true;
+
+        if (System.nanoTime() - deadline >= 0 || GetSoftStop()) break;
+
+        SortMoves(moves, number_of_moves);
+      }
+    }
+
+    return bestmove;
+  }
+
+
+  /**
+   * Returns the search depth for the strength level when there are pieces
+   * pieces on the board. The depth is increased towards the end of the game,
+   * when the positions have fewer moves.
+   */
+
+  private int ComputeDepth(int pieces)
+  {
+    int depth = m_strength;
+    if (depth == 0) depth = 1; // m_strength == 0 is very low strength
+
+    if (pieces + depth + 4 >= 64)
+      depth = 64 - pieces;
+    else if (pieces + depth + 7 >= 64)
+      depth += 3;
+    else if (pieces + depth + 9 >= 64)
+      depth += 2;
+    else if (pieces + depth + 11 >= 64)
+      depth++;
+
+    return depth;
+  }
+
+
+  /**
+   * Searches the moves in moves[] to the depth m_depth, stores the value of
+   * each move in moves[] and returns the best move (a random one of them if
+   * several are equally good). The values are only exact if they are within
+   * the window alpha to beta (not including the limits).
+   * <P>
+   * The first move is searched with the whole window. The rest only have to
+   * be shown not to be better than the best so far, which is done with a
+   * null window (see SearchNullWindow()) just below the best value, so that
+   * moves that are as good as the best one also get exact values.
+   */
+
+  private Move SearchRoot(int player, MoveAndValue moves[],
+    int number_of_moves, int alpha, int beta, long playerbits,
+    long opponentbits, long key)
+  {
+    int maxval = -LARGEINT;
+    int max_x = 0;
+    int max_y = 0;
+    int number_of_maxval = 0;
+
+    // long starttime = System.currentTimeMillis();
+
+    // With several threads only the first move is searched here, to get a
+    // good value to cut off the search of the other moves with:
+
+    int serial = m_threads > 1 ? 1 : number_of_moves;
+
+    for (int i=0; i < serial && i < number_of_moves; i++)
+    {
+      PollStop();
+
+      int sq = Bitboard.Square(moves[i].m_x, moves[i].m_y);
+      int low = Math.max(maxval - 1, alpha);
+      int val = i == 0 ?
+        ComputeMove2(sq, player, 1, low, beta, playerbits, opponentbits, key) :
+        SearchNullWindow(sq, player, 1, low, beta, playerbits, opponentbits,
+          key);
+
+      if (Aborted()) break;
+
+      moves[i].m_value = val;
+
+      if (val > maxval) maxval = val;
+    }
+
+    if (serial < number_of_moves && ! Aborted())
+      SearchInParallel(player, moves, serial, number_of_moves, maxval, alpha,
+        beta, playerbits, opponentbits, key);
+
+    // long endtime = System.currentTimeMillis();
+
+    if (Aborted()) return null;
+
+    // Moves with values below the best value may have been cut off, but
+    // the values of the best moves are always exact (unless they are outside
+    // the window):
+
+    maxval = -LARGEINT;
+
+    for (int i=0; i < number_of_moves; i++)
+    {
+      if (moves[i].m_value > maxval)
+      {
+	maxval = moves[i].m_value;
+	max_x = moves[i].m_x;
+	max_y = moves[i].m_y;
+	number_of_maxval = 1;
+      }
+      else if (moves[i].m_value == maxval) number_of_maxval++;
+    }
+
+    if (number_of_maxval > 1)
+    {
+      int r = 0;
+
+      // if m_strength == 0, select any move at random:
+
+      if (m_strength != 0)
+        r = GetRandom() % number_of_maxval + 1;
+      else
+	r = GetRandom() % number_of_moves + 1;
+
+      int i;
+
+      for (i=0; i < number_of_moves; i++)
+	if ((m_strength == 0 || moves[i].m_value == maxval) && --r <= 0) break;
+
+      max_x = moves[i].m_x;
+      max_y = moves[i].m_y;
+    }
+
+
+/********
+    System.out.print("Number of pos. with highest score: ");
+    System.out.println(number_of_maxval);
+
+    System.out.print("Nodes searched:     ");
+    System.out.println(m_nodes_searched);
+
+    System.out.print("Total time:         ");
+    System.out.println((endtime - starttime) / 1000.0);
+
+    System.out.print("Time per node (ms): ");
+    System.out.println((float) (endtime-starttime) / (float) m_nodes_searched);
+
+    System.out.print("Position value:     ");
+    if (maxval != -LARGEINT) System.out.println(maxval);
+
+    System.out.println("");
+********/
+
+    if (Aborted()) return null;
+    else if (maxval != -LARGEINT) return new Move(max_x, max_y, player);
+    else return null;
+  }
+
+
+  /**
+   * Returns the highest value in moves[].
+   */
+
+  private static int GetMaxValue(MoveAndValue moves[], int number_of_moves)
+  {
+    int maxval = -LARGEINT;
+
+    for (int i=0; i < number_of_moves; i++)
+      maxval = Math.max(maxval, moves[i].m_value);
+
+    return maxval;
+  }
+
+
+  /**
+   * Searches the move sq with a null window, alpha to alpha+1, and searches
+   * it again with the window alpha to beta if it turns out to be better than
+   * alpha. A null window search can only tell if the value is greater than
+   * alpha or not, but it cuts off much more than a search with a wider
+   * window, and most moves are not better than the best one so far.
+   */
+
+  private final int SearchNullWindow(int sq, int player, int level,
+    int alpha, int beta, long playerbits, long opponentbits, long key)
+  {
+    int val = ComputeMove2(sq, player, level, alpha, alpha+1, playerbits,
+      opponentbits, key);
+
+    if (val > alpha && val < beta && ! Aborted())
+      val = ComputeMove2(sq, player, level, alpha, beta, playerbits,
+        opponentbits, key);
+
+    return val;
+  }
+
+
+  /**
+   * Searches the moves first to number_of_moves-1 in moves[] with the
+   * worker engines on m_threads threads. maxval is the best value found
+   * so far, and alpha and beta the window of the search.
+   */
+
+  private void SearchInParallel(final int player, final MoveAndValue moves[],
+    int first, final int number_of_moves, int maxval, final int alpha,
+    final int beta, final long playerbits, final long opponentbits,
+    final long key)
+  {
+    if (m_pool == null)
+    {
+      m_pool = new ForkJoinPool(m_threads);
+      m_workers = new Engine[m_threads];
+
+      for (int i=0; i < m_threads; i++)
+      {
+        m_workers[i] = new Engine(m_strength);
+        m_workers[i].m_tt_bytes = 0;
+        m_workers[i].m_master = this;
+      }
+    }
+
+    final AtomicInteger next = new AtomicInteger(first);
+    final AtomicInteger sharedmax = new AtomicInteger(maxval);
+
+    List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+
+    for (int i=0; i < m_workers.length; i++)
+    {
+      final Engine worker = m_workers[i];
+
+      worker.m_tt = m_tt;
+      worker.m_depth = m_depth;
+      worker.m_coeff = m_coeff;
+      worker.m_exhaustive = m_exhaustive;
+      worker.m_tt_context = m_tt_context;
+      worker.m_tt_tag = m_tt_tag;
+      worker.m_patterns = m_patterns;
+      worker.m_probcut = m_probcut;
+      worker.m_solver_empties = m_solver_empties;
+      worker.m_deadline = m_deadline;
+      worker.m_timecontrol = m_timecontrol;
+      worker.m_timeout = false;
+      worker.m_stopped = false;
+      worker.m_nodes_searched = 0;
+      worker.m_cutoffs = 0;
+      worker.m_tt_probes = 0;
+      worker.m_tt_hits = 0;
+
+      tasks.add(new Callable<Object>()
+      {
+        public Object call()
+        {
+          worker.SearchMoves(player, moves, number_of_moves, next, sharedmax,
+            alpha, beta, playerbits, opponentbits, key);
+          return null;
+        }
+      });
+    }
+
+    m_pool.invokeAll(tasks);
+
+    for (int i=0; i < m_workers.length; i++)
+    {
+      m_nodes_searched += m_workers[i].m_nodes_searched;
+      m_cutoffs += m_workers[i].m_cutoffs;
+      m_tt_probes += m_workers[i].m_tt_probes;
+      m_tt_hits += m_workers[i].m_tt_hits;
+      if (m_workers[i].m_timeout) m_timeout = true;
+      if (m_workers[i].m_stopped) m_stopped = true;
+    }
+  }
+
+
+  /**
+   * Called on a worker engine by SearchInParallel(). Searches moves from
+   * moves[] (taking the next one that no other thread has taken from next)
+   * until there are none left, using the best value found by any thread
+   * (sharedmax) to cut off the search.
+   */
+
+  private void SearchMoves(int player, MoveAndValue moves[],
+    int number_of_moves, AtomicInteger next, AtomicInteger sharedmax,
+    int alpha, int beta, long playerbits, long opponentbits, long key)
+  {
+    for (int i = next.getAndIncrement(); i < number_of_moves;
+         i = next.getAndIncrement())
+    {
+      PollStop();
+
+      int val = SearchNullWindow(Bitboard.Square(moves[i].m_x, moves[i].m_y),
+        player, 1, Math.max(sharedmax.get() - 1, alpha), beta, playerbits,
+        opponentbits, key);
+
+      if (Aborted()) return;
+
+      moves[i].m_value = val;
+
+      int max = sharedmax.get();
+
+      while (val > max && ! sharedmax.compareAndSet(max, val))
+        max = sharedmax.get();
+    }
+  }
+
+
+  /**
+   * Sorts moves[] so that the moves with the highest values come first
+   * (moves with equal values keep their order).
+   */
+
+  private static void SortMoves(MoveAndValue moves[], int number_of_moves)
+  {
+    for (int i=1; i < number_of_moves; i++)
+    {
+      MoveAndValue m = moves[i];
+      int j;
+
+      for (j=i; j > 0 && moves[j-1].m_value < m.m_value; j--)
+        moves[j] = moves[j-1];
+
+      moves[j] = m;
+    }
+  }
+
+
+  /**
+   * Counts a searched node. Every 1024 nodes the interrupt flag and (if
+   * there is a time limit) the clock are checked. Both are more expensive to
+   * read than a field of the engine, and a search reaches 1024 nodes in well
+   * under a millisecond.
+   */
+
+  final void CountNode()
+  {
+    if ((++m_nodes_searched & 1023) == 0) PollStop();
+  }
+
+
+  /**
+   * Sets m_stopped if SetInterrupt() has been called and m_timeout if the
+   * time is up.
+   */
+
+  private void PollStop()
+  {
+    if (m_master.GetInterrupt()) m_stopped = true;
+
+    if (m_timecontrol && System.nanoTime() - m_deadline >= 0)
+      m_timeout = true;
+  }
+
+
+  /**
+   * Returns true when the search should be abandoned, because SetInterrupt()
+   * has been called or because the time is up.
+   */
+
+  final boolean Aborted()
+  {
+    return m_timeout || m_stopped;
+  }
+
+
+  private Move ComputeFirstMove(Game g)
+  {
+    int r;
+    int player = g.GetWhoseTurn();
+
+    r = GetRandom() % 4 + 1;
+
+    if (player == Score.WHITE)
+    {
+      if (r == 1) return new Move(3, 5, player);
+      else if (r == 2) return new Move(4, 6, player);
+      else if (r == 3) return new Move(5, 3, player);
+      else return new Move(6, 4, player);
+    }
+    else
+    {
+      if (r == 1) return new Move(3, 4, player);
+      else if (r == 2) return new Move(5, 6, player);
+      else if (r == 3) return new Move(4, 3, player);
+      else return new Move(6, 5, player);
+    }
+  }
+
+
+  /**
+   * Plays the move at square index sq for player, the owner of playerbits,
+   * and returns the value of the resulting position for that player. key is
+   * the transposition table key of the position before the move. The move is
+   * made on copies of the two bitboards, so nothing has to be restored when
+   * the search in the node is completed.
+   */
+
+  private final int ComputeMove2(int sq, int player, int level, int alpha,
+    int beta, long playerbits, long opponentbits, long key)
+  {
+    long flips = Bitboard.ComputeFlips(sq, playerbits, opponentbits);
+
+    if (flips == 0) return ILLEGAL_VALUE;
+
+    int opponent = Score.GetOpponent(player);
+
+    CountNode();
+
+    ///////////////////
+    // Turn all pieces:
+    ///////////////////
+
+    playerbits |= flips | (1L << sq);
+    opponentbits &= ~flips;
+    key = TranspositionTable.UpdateKey(key, player, sq, flips);
+
+    int retval = -LARGEINT;
+
+    if (level >= m_depth)
+      retval = EvaluatePosition(playerbits, opponentbits); // Terminal node
+    else
+    {
+      int maxval = TryAllMoves(opponent, level, -beta, -alpha, opponentbits,
+        playerbits, key);
+
+      // An abandoned search also returns -LARGEINT, which must not be taken
+      // for a pass (searching on would take time after time is up):
+
+      if (Aborted()) return ILLEGAL_VALUE;
+
+      if (maxval != -LARGEINT) retval = -maxval;
+      else
+      {
+	///////////////////////////////////////////////////////////////
+	// No possible move for the opponent, it is players turn again:
+	///////////////////////////////////////////////////////////////
+
+	retval = TryAllMoves(player, level, alpha, beta, playerbits,
+	  opponentbits, TranspositionTable.PassKey(key));
+
+	if (retval == -LARGEINT)
+	{
+	  ///////////////////////////////////////////////
+	  // No possible move for anybody => end of game:
+	  ///////////////////////////////////////////////
+
+	  int finalscore =
+	    Long.bitCount(playerbits) - Long.bitCount(opponentbits);
+
+	  if (m_exhaustive) retval = finalscore;
+	  else
+	  {
+	    // Take a sure win and avoid a sure loss (may not be optimal):
+
+	    if (finalscore > 0) retval = LARGEINT - 65 + finalscore;
+	    else if (finalscore < 0) retval = -(LARGEINT - 65 + finalscore);
+	    else retval = 0;
+	  }
+	}
+      }
+    }
+
+    if (Aborted()) return ILLEGAL_VALUE;
+    else return retval;
+  }
+
+
+  /**
+   * Tries all moves for player, the owner of playerbits, and returns the
+   * highest value found, or -LARGEINT if there are no legal moves. Only
+   * values within the window alpha to beta (not including the limits) are
+   * exact: if the value is alpha or less, the value returned is not greater
+   * than alpha, and the search is cut off as soon as a value of beta or more
+   * is found, which is then returned.
+   * <P>
+   * This is principal variation search: the first move (which is the best
+   * move in most positions, thanks to the move ordering) is searched with the
+   * whole window, and the rest with null windows (see SearchNullWindow()),
+   * which only show that they are not better.
+   * <P>
+   * The result is looked up in the transposition table before searching and
+   * stored there afterwards, as an exact value, a lower bound (when the
+   * search was cut off) or an upper bound (when no move was better than
+   * alpha). The best move stored for the position is tried first.
+   */
+
+  private final int TryAllMoves(int player, int level, int alpha, int beta,
+    long playerbits, long opponentbits, long key)
+  {
+    int depth = m_depth - level;
+    int sq = -1;
+
+    if (m_exhaustive && depth <= m_solver_empties)
+    {
+      // Near the end of the game the endgame solver is used:
+
+      if (Bitboard.GenerateMoves(playerbits, opponentbits) == 0)
+        return -LARGEINT;
+
+      if (m_solver == null) m_solver = new EndgameSolver(this);
+
+      int val = m_solver.Solve(playerbits, opponentbits, alpha, beta);
+
+      if (Aborted()) return -LARGEINT;
+      return val;
+    }
+
+    if (m_tt != null && depth >= TT_MIN_DEPTH)
+    {
+      long data = m_tt.Probe(key ^ m_tt_context);
+
+      m_tt_probes++;
+
+      if (data != 0)
+      {
+        m_tt_hits++;
+
+        int value = TranspositionTable.DataValue(data);
+
+        if (TranspositionTable.DataDepth(data) >= depth &&
+            TranspositionTable.DataTag(data) == m_tt_tag)
+        {
+          int bound = TranspositionTable.DataBound(data);
+
+          if (bound == TranspositionTable.BOUND_EXACT) return value;
+
+          if (bound == TranspositionTable.BOUND_LOWER && value >= beta)
+            return value;
+
+          if (bound == TranspositionTable.BOUND_UPPER && value <= alpha)
+            return value;
+        }
+
+        sq = TranspositionTable.DataMove(data);
+      }
+    }
+
+    long legal = Bitboard.GenerateMoves(playerbits, opponentbits);
+
+    // A position where player must pass is not cut by ProbCut, since the
+    // caller has to see -LARGEINT to handle the pass (or the end of the
+    // game):
+
+    if (m_probcut != null && ! m_exhaustive && legal != 0 &&
+        m_probcut.CanCut(Long.bitCount(playerbits | opponentbits), depth))
+    {
+      int val = TryProbCut(player, level, depth, alpha, beta, playerbits,
+        opponentbits, key);
+
+      if (val != ILLEGAL_VALUE) return val;
+    }
+
+    int number_of_moves = OrderMoves(player, level, sq, legal);
+
+    int maxval = -LARGEINT;
+    int bestmove = -1;
+    int low = alpha;
+
+    for (int i=0; i < number_of_moves; i++)
+    {
+      sq = NextMove(level, i, number_of_moves);
+
+      int val = i == 0 ?
+        ComputeMove2(sq, player, level+1, low, beta, playerbits,
+          opponentbits, key) :
+        SearchNullWindow(sq, player, level+1, low, beta, playerbits,
+          opponentbits, key);
+
+      if (Aborted()) break;
+
+      if (val > maxval)
+      {
+	maxval = val;
+	bestmove = sq;
+
+	if (maxval >= beta)
+	{
+	  m_cutoffs++;
+	  RecordCutoff(player, level, depth, sq);
+	  break;
+	}
+
+	if (maxval > low) low = maxval;
+      }
+    }
+
+    if (Aborted()) return -LARGEINT;
+
+    if (m_tt != null && depth >= TT_MIN_DEPTH)
+    {
+      int bound = TranspositionTable.BOUND_EXACT;
+
+      if (maxval >= beta) bound = TranspositionTable.BOUND_LOWER;
+      else if (maxval <= alpha) bound = TranspositionTable.BOUND_UPPER;
+
+      m_tt.Store(key ^ m_tt_context, depth, bound, maxval, bestmove,
+        m_tt_tag);
+    }
+
+    return maxval;
+  }
+
+
+  /**
+   * Searches the position (that TryAllMoves() is about to search to the
+   * depth depth) with the shallow depth of m_probcut, and returns beta if
+   * that predicts that the value is beta or more, or alpha if it predicts
+   * that the value is alpha or less. Otherwise returns ILLEGAL_VALUE, and
+   * the position has to be searched to the full depth.
+   * <P>
+   * The shallow searches only have to tell if the value is above or below a
+   * bound, so they use null windows. They are selective themselves if they
+   * are deep enough.
+   */
+
+  private final int TryProbCut(int player, int level, int depth, int alpha,
+    int beta, long playerbits, long opponentbits, long key)
+  {
+    int pieces = Long.bitCount(playerbits | opponentbits);
+    int maxdepth = m_depth;
+    int retval = ILLEGAL_VALUE;
+
+    m_depth = level + ProbCut.GetShallowDepth(depth);
+
+    // Values beyond PROBCUT_LIMIT are won or lost games, not evaluations:
+
+    if (beta < PROBCUT_LIMIT)
+    {
+      int bound = m_probcut.GetHighBound(pieces, depth, beta);
+
+      if (bound < PROBCUT_LIMIT &&
+          TryAllMoves(player, level, bound-1, bound, playerbits, opponentbits,
+            key) >= bound)
+        retval = beta;
+    }
+
+    if (retval == ILLEGAL_VALUE && alpha > -PROBCUT_LIMIT && ! Aborted())
+    {
+      int bound = m_probcut.GetLowBound(pieces, depth, alpha);
+
+      if (bound > -PROBCUT_LIMIT &&
+          TryAllMoves(player, level, bound, bound+1, playerbits, opponentbits,
+            key) <= bound)
+        retval = alpha;
+    }
+
+    m_depth = maxdepth;
+
+    if (retval != ILLEGAL_VALUE) m_cutoffs++;
+
+    return Aborted() ? ILLEGAL_VALUE : retval;
+  }
+
+
+  /**
+   * Searches the position where player, the owner of playerbits, is to move
+   * to the depth depth and returns its value for player (-LARGEINT if player
+   * has no legal moves). The position is evaluated as it would be inside a
+   * search from an earlier position that has horizon moves left when it
+   * reaches this position, and the search is never selective. Used by the
+   * CalibrateProbCut program to compare shallow and deep searches.
+   */
+
+  int SearchPosition(int player, long playerbits, long opponentbits,
+    int depth, int horizon)
+  {
+    int pieces = Long.bitCount(playerbits | opponentbits);
+    ProbCut probcut = m_probcut;
+
+    ResetStatistics();
+
+    if (m_tt == null && m_tt_bytes > 0)
+      m_tt = new TranspositionTable(m_tt_bytes);
+
+    // A shared table is advanced by its owner:
+
+    if (m_tt != null && m_shared_tt == null) m_tt.NewSearch();
+
+    ClearMoveOrdering();
+
+    m_probcut = null;
+    m_timecontrol = false;
+    m_depth = depth;
+    m_exhaustive = pieces + depth >= 64;
+    m_coeff = 100 - (100*(pieces + horizon - 4))/60;
+    SetEvaluationContext();
+
+    int val = TryAllMoves(player, 0, -LARGEINT, LARGEINT, playerbits,
+      opponentbits, TranspositionTable.ComputeKey(
+        player == Score.WHITE ? playerbits : opponentbits,
+        player == Score.WHITE ? opponentbits : playerbits, player));
+
+    m_probcut = probcut;
+
+    return val;
+  }
+
+
+  /**
+   * Puts the moves in legal (for player at level level) in m_move_list[level]
+   * and gives each of them a priority in m_move_priority[level]. The move
+   * hashmove (from the transposition table) comes first, then the killer
+   * moves for the level, and then the rest ordered by their board control
+   * value (corners first and squares next to corners last) and, within each
+   * board control value, by the history table. Returns the number of moves.
+   */
+
+  private final int OrderMoves(int player, int level, int hashmove, long legal)
+  {
+    int list[] = m_move_list[level];
+    int priority[] = m_move_priority[level];
+    int killers[] = m_killers[level];
+    int history[] = m_history[player];
+    int n = 0;
+
+    for (; legal != 0; legal &= legal - 1)
+    {
+      int sq = Long.numberOfTrailingZeros(legal);
+
+      list[n] = sq;
+
+      if (sq == hashmove) priority[n] = Integer.MAX_VALUE;
+      else if (sq == killers[0]) priority[n] = KILLER_PRIORITY;
+      else if (sq == killers[1]) priority[n] = KILLER_PRIORITY - 1;
+      else priority[n] = m_static_priority[sq] + history[sq];
+
+      n++;
+    }
+
+    return n;
+  }
+
+
+  /**
+   * Returns the move with the highest priority among the moves i to n-1 in
+   * m_move_list[level], after moving it to index i. Selecting one move at a
+   * time is cheaper than sorting, since most nodes are cut off after one or
+   * two moves.
+   */
+
+  private final int NextMove(int level, int i, int n)
+  {
+    int list[] = m_move_list[level];
+    int priority[] = m_move_priority[level];
+    int best = i;
+
+    for (int j=i+1; j < n; j++)
+      if (priority[j] > priority[best]) best = j;
+
+    int sq = list[best];
+
+    list[best] = list[i];
+    priority[best] = priority[i];
+    list[i] = sq;
+
+    return sq;
+  }
+
+
+  /**
+   * Remembers that the move sq caused a cutoff at level level, depth plies
+   * from the leaves: it becomes the first killer move for the level, and its
+   * history value for player is increased (more for cutoffs far from the
+   * leaves, since they save more work).
+   */
+
+  private final void RecordCutoff(int player, int level, int depth, int sq)
+  {
+    int killers[] = m_killers[level];
+
+    if (killers[0] != sq)
+    {
+      killers[1] = killers[0];
+      killers[0] = sq;
+    }
+
+    int history[] = m_history[player];
+
+    history[sq] += depth * depth;
+
+    if (history[sq] >= MAX_HISTORY)
+      for (int i=0; i < 64; i++)
+      {
+	history[i] /= 2;
+	m_history[Score.GetOpponent(player)][i] /= 2;
+      }
+  }
+
+
+  /**
+   * Clears the killer moves and the history table before a new search.
+   */
+
+  private void ClearMoveOrdering()
+  {
+    for (int i=0; i < m_killers.length; i++)
+    {
+      m_killers[i][0] = -1;
+      m_killers[i][1] = -1;
+    }
+
+    Arrays.fill(m_history[Score.WHITE], 0);
+    Arrays.fill(m_history[Score.BLACK], 0);
+  }
+
+
+  /**
+   * Sets m_tt_context from the settings that EvaluatePosition() uses, so
+   * that values from searches that evaluate positions differently are not
+   * mixed in the transposition table (which may be shared with other
+   * engines), while values from searches that evaluate in the same way are
+   * used by each other. At the end of the game the values are the final
+   * results, which are the same for all searches.
+   */
+
+  private void SetEvaluationContext()
+  {
+    long context = 0;
+
+    if (! m_exhaustive)
+    {
+      // A selective search gives other values than a full one:
+
+      context = 1L << 63 |
+        (m_patterns != null ? m_patterns.GetId() : 0) << 32 |
+        (m_probcut != null ? m_probcut.GetId() : 0);
+    }
+
+    m_tt_context = context * 0x9e3779b97f4a7c15L;
+
+    // The evaluation without patterns weighs its terms with m_coeff, which
+    // changes with the search depth. It is not a part of the context, so
+    // that the best moves stored by earlier iterations of a search (and by
+    // earlier searches) are found, but it is stored with the values, which
+    // are only used by searches with the same m_coeff:
+
+    m_tt_tag = m_exhaustive || m_patterns != null ? 0 : m_coeff & 0x7f;
+  }
+
+
+  final int EvaluatePosition(long playerbits, long opponentbits)
+  {
+    int retval;
+
+    int score_player = Long.bitCount(playerbits);
+    int score_opponent = Long.bitCount(opponentbits);
+
+    if (m_exhaustive) retval = score_player - score_opponent;
+    else if (m_patterns != null)
+      retval = m_patterns.Evaluate(playerbits, opponentbits);
+    else
+    {
+      retval = (100-m_coeff) *
+	(score_player - score_opponent) +
+	m_coeff * BC_WEIGHT *
+	(CalcBcScore(playerbits) - CalcBcScore(opponentbits));
+
+      long empty = ~(playerbits | opponentbits);
+
+      // Having more possible moves than the opponent, now and later (moves
+      // next to the opponent's pieces), and fewer pieces that are next to
+      // empty squares (frontier pieces, that give the opponent moves):
+
+      int mobility =
+        Long.bitCount(Bitboard.GenerateMoves(playerbits, opponentbits)) -
+        Long.bitCount(Bitboard.GenerateMoves(opponentbits, playerbits));
+
+      int potential_mobility =
+        Long.bitCount(Bitboard.Neighbours(opponentbits) & empty) -
+        Long.bitCount(Bitboard.Neighbours(playerbits) & empty);
+
+      long near_empty = Bitboard.Neighbours(empty);
+
+      int frontier = Long.bitCount(near_empty & playerbits) -
+        Long.bitCount(near_empty & opponentbits);
+
+      retval += m_coeff * (MOBILITY_WEIGHT * mobility +
+        POTENTIAL_MOBILITY_WEIGHT * potential_mobility -
+        FRONTIER_WEIGHT * frontier);
+
+      // Pieces that can never be turned count as much all through the game:
+
+      retval += 100 * STABLE_WEIGHT *
+        (Long.bitCount(Bitboard.EdgeStable(playerbits)) -
+         Long.bitCount(Bitboard.EdgeStable(opponentbits)));
+    }
+
+    return retval;
+  }
+
+
+  private void SetupBcBoard()
+  {
+    m_bc_board = new int[9][9];
+
+    for (int i=1; i < 9; i++)
+    for (int j=1; j < 9; j++)
+    {
+      if (i == 2 || i == 7) m_bc_board[i][j] = -2; else m_bc_board[i][j] = 0;
+      if (j == 2 || j == 7) m_bc_board[i][j] -= 2;
+    }
+
+    m_bc_board[1][1] = 20;
+    m_bc_board[8][1] = 20;
+    m_bc_board[1][8] = 20;
+    m_bc_board[8][8] = 20;
+
+    m_bc_board[1][2] = -2;
+    m_bc_board[2][1] = -2;
+    m_bc_board[1][7] = -2;
+    m_bc_board[7][1] = -2;
+    m_bc_board[8][2] = -2;
+    m_bc_board[2][8] = -2;
+    m_bc_board[8][7] = -2;
+    m_bc_board[7][8] = -2;
+  }
+
+
+  private void SetupBcMasks()
+  {
+    int values[] = new int[64];
+    long masks[] = new long[64];
+    int n = 0;
+
+    for (int i=1; i < 9; i++)
+    for (int j=1; j < 9; j++)
+    if (m_bc_board[i][j] != 0)
+    {
+      int k;
+
+      for (k=0; k < n && values[k] != m_bc_board[i][j]; k++)
+	;
+
+      if (k == n) values[n++] = m_bc_board[i][j];
+
+      masks[k] |= Bitboard.SquareBit(i, j);
+    }
+
+    m_bc_values = new int[n];
+    m_bc_masks = new long[n];
+
+    System.arraycopy(values, 0, m_bc_values, 0, n);
+    System.arraycopy(masks, 0, m_bc_masks, 0, n);
+
+    // The board control values (-4 to 20) are made larger than any history
+    // value, so they decide the move order before the history table does:
+
+    m_static_priority = new int[64];
+
+    for (int sq=0; sq < 64; sq++)
+      m_static_priority[sq] = (m_bc_board[Bitboard.SquareX(sq)]
+        [Bitboard.SquareY(sq)] + 8) * MAX_HISTORY;
+  }
+
+
+  private final int CalcBcScore(long bits)
+  {
+    int sum = 0;
+
+    for (int i=0; i < m_bc_masks.length; i++)
+      sum += m_bc_values[i] * Long.bitCount(bits & m_bc_masks[i]);
+
+    return sum;
+  }
+}
@@ -0,0 +1,126 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * The class EngineExecutor runs move computations (see
+ * CommandInterface.ComputeMove()) on a fixed number of threads, so that
+ * many games can share the same threads instead of starting a new thread
+ * for every move. Computations that can not start at once wait in a queue
+ * of limited length; when the queue is full Submit() refuses new ones, so
+ * the caller finds out that the engines are overloaded instead of the queue
+ * growing without limit.
+ * <P>
+ * The threads have the lowest priority (computer moves should not make the
+ * user interface slow) and do not keep the program from exiting.
+ */
+
+public class EngineExecutor
+{
+  private static EngineExecutor m_shared;
+
+  private ThreadPoolExecutor m_executor;
+
+
+  /**
+   * Creates an executor with threads threads and room for queuesize
+   * computations waiting to be run.
+   */
+
+  public EngineExecutor(int threads, int queuesize)
+  {
+    final AtomicInteger count = new AtomicInteger();
+
+    ThreadFactory factory = new ThreadFactory()
+    {
+      public Thread newThread(Runnable r)
+      {
+        Thread thread = new Thread(r, "EngineExecutor-" +
+          count.incrementAndGet());
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+
+    m_executor = new ThreadPoolExecutor(threads, threads, 0,
+      TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queuesize),
+      factory);
+  }
+
+
+  /**
+   * Returns the executor that is used by CommandInterface when no other one
+   * is given. It has one thread for every processor and room for 1024
+   * waiting computations.
+   */
+
+  public static synchronized EngineExecutor GetShared()
+  {
+    if (m_shared == null)
+      m_shared = new EngineExecutor(Runtime.getRuntime().availableProcessors(),
+        1024);
+
+    return m_shared;
+  }
+
+
+  /**
+   * Runs task on one of the threads as soon as one is free. Returns false
+   * (without running task) if the queue is full or the executor has been
+   * shut down.
+   */
+
+  public boolean Submit(Runnable task)
+  {
+    try
+    {
+      m_executor.execute(task);
+    }
+    catch (RejectedExecutionException e)
+    {
+      return false;
+    }
+
+    return true;
+  }
+
+
+  /**
+   * Returns the number of threads.
+   */
+
+  public int GetThreads() { return m_executor.getMaximumPoolSize(); }
+
+
+  /**
+   * Returns the number of computations that are waiting for a thread.
+   */
+
+  public int GetQueueLength() { return m_executor.getQueue().size(); }
+
+
+  /**
+   * Returns the number of computations that are running.
+   */
+
+  public int GetActiveCount() { return m_executor.getActiveCount(); }
+
+
+  /**
+   * Stops accepting computations. The ones that have already been submitted
+   * are still run.
+   */
+
+  public void Shutdown() { m_executor.shutdown(); }
+}
@@ -0,0 +1,140 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.util.ArrayDeque;
+
+
+/**
+ * The class EnginePool keeps engines that are not in use, so that games can
+ * borrow an engine when they need a move computed instead of owning one
+ * each. An Engine is fairly large (its transposition table in particular),
+ * and a game only needs it while a move is computed, so a few engines can
+ * serve a great many games.
+ * <P>
+ * Engines are created when none is free, so the number of engines is the
+ * largest number of moves that have been computed at the same time (which
+ * is limited by the number of threads of the EngineExecutor). At most
+ * maxidle engines are kept when they are returned.
+ * <P>
+ * With SetSharedTranspositionTable() all the engines use one transposition
+ * table, instead of one each, so that a move that is computed in one game
+ * can use what was found when another game passed through the same
+ * positions. The owner of the table decides when its entries are old (see
+ * SharedTranspositionTable.NewSearch()).
+ */
+
+public class EnginePool
+{
+  private ArrayDeque<Engine> m_idle = new ArrayDeque<Engine>();
+  private int m_max_idle;
+  private int m_created;
+  private OpeningBook m_book;
+  private PatternEvaluator m_patterns;
+  private SharedTranspositionTable m_shared_tt;
+  private SearchListener m_listener;
+
+
+  /**
+   * Creates a pool that keeps at most maxidle engines that are not in use.
+   */
+
+  public EnginePool(int maxidle)
+  {
+    m_max_idle = maxidle;
+  }
+
+
+  /**
+   * Returns a free engine (a new one if there is none) set to the strength
+   * level strength. It must be given back with Release() when the move has
+   * been computed.
+   */
+
+  public synchronized Engine Acquire(int strength)
+  {
+    Engine engine = m_idle.poll();
+
+    if (engine == null)
+    {
+      engine = new Engine(strength);
+      m_created++;
+    }
+
+    engine.SetStrength(strength);
+    engine.SetOpeningBook(m_book);
+    engine.SetPatternEvaluator(m_patterns);
+    engine.SetSharedTranspositionTable(m_shared_tt);
+    engine.SetSearchListener(m_listener);
+    engine.SetInterrupt(false);
+    engine.SetSoftStop(false);
+
+    return engine;
+  }
+
+
+  /**
+   * Gives back an engine that was returned by Acquire().
+   */
+
+  public synchronized void Release(Engine engine)
+  {
+    if (m_idle.size() < m_max_idle) m_idle.push(engine);
+  }
+
+
+  /**
+   * Sets the opening book that the engines use (null for none).
+   */
+
+  public synchronized void SetOpeningBook(OpeningBook book) { m_book = book; }
+
+
+  /**
+   * Sets the pattern evaluator that the engines use (null for none).
+   */
+
+  public synchronized void SetPatternEvaluator(PatternEvaluator evaluator)
+  {
+    m_patterns = evaluator;
+  }
+
+
+  /**
+   * Sets the transposition table that the engines share (see
+   * Engine.SetSharedTranspositionTable(), null for one table per engine).
+   */
+
+  public synchronized void SetSharedTranspositionTable(
+    SharedTranspositionTable table)
+  {
+    m_shared_tt = table;
+  }
+
+
+  /**
+   * Sets the listener that the engines report their searches to (see
+   * SuperEngine.SetSearchListener()).
+   */
+
+  public synchronized void SetSearchListener(SearchListener l)
+  {
+    m_listener = l;
+  }
+
+
+  /**
+   * Returns the number of engines that are not in use.
+   */
+
+  public synchronized int GetIdleCount() { return m_idle.size(); }
+
+
+  /**
+   * Returns the number of engines that have been created.
+   */
+
+  public synchronized int GetCreatedCount() { return m_created; }
+}
@@ -1,225 +1,346 @@
-
-// This code is freely distributable, but may neither be sold nor used or
-// included in any product sold for profit without permission from
-// Mats Luthman.
-
-package Othello.Engine;
-
-
-/**
- * The class Game represents a complete or incomplete Othello game. It uses
- * the classes Score and Move (and internally  Position).
- * You can make moves, take back one move at a time, reset to initial position
- * and get certain data on the current position.
- * @see Score
- * @see Move
- */
-
-public class Game
-{
-  private Position m_positions[];
-  private int m_movenumber;
-
-  /**
-   * Creates a game with the initial position.
-   */
-
-  public Game()
-  {
-    m_positions = new Position[61];
-    m_positions[0] = new Position();
-    m_movenumber = 0;
-  }
-
-
-  /**
-   * Resets to the initial position.
-   */
-
-  public void Reset()
-  {
-    m_positions = new Position[61];
-    m_positions[0] = new Position();
-    m_movenumber = 0;
-  }
-
-
-  /**
-   * Makes the move m. Returns false if the move is not legal or when called
-   * with a move where the player is Score.NOBODY.
-   */
-
-  public boolean MakeMove(Move m)
-  {
-    if (m.GetPlayer() == Score.NOBODY) return false;
-    if (GetWhoseTurn() != m.GetPlayer()) return false;
-    if (! m_positions[m_movenumber].MoveIsLegal(m)) return false;
-
-    m_positions[m_movenumber+1] = new Position(m_positions[m_movenumber], m);
-    m_movenumber++;
-
-    return true;
-  }
-
-
-  /**
-   * Takes back a move. Returns true if not at the initial position.
-   */
-
-  public boolean TakeBackMove()
-  {
-    if (m_movenumber <= 0) return false;
-
-    m_positions[m_movenumber--] = null;
-  
-    return true;
-  }
-
-
-  /**
-   * Returns the piece at (x, y). Returns Score.NOBODY if the square is not
-   * occupied.
-   */
-
-  public int GetSquare(int x, int y)
-  {
-    return m_positions[m_movenumber].GetSquare(x, y);
-  }
-
-
-  /**
-   * Returns the score for player.
-   */
-
-  public int GetScore(int player)
-  {
-    return m_positions[m_movenumber].GetScore(player);
-  }
-
-
-  /**
-   * Returns the last move. Returns null if at the initial position.
-   */
-
-  public Move GetLastMove() { return m_positions[m_movenumber].GetLastMove(); }
-
-
-  /**
-   * Returns the moves made in the game, null if parameter i is invalid.
-   */
-
-  public Move GetMove(int i)
-  {
-    if (i <=0 || i > m_movenumber) return null;
-
-    return m_positions[i].GetLastMove();
-  }
-
-
-  /**
-   * Checks if move m is legal.
-   */
-
-  public boolean MoveIsLegal(Move m)
-  {
-    return m_positions[m_movenumber].MoveIsLegal(m);
-  }
-
-
-  /**
-   * Checks if there is a legal move for player.
-   */
-
-  public boolean MoveIsPossible(int player)
-  {
-    return m_positions[m_movenumber].MoveIsPossible(player);
-  }
-
-
-  /**
-   * Checks if there are any legal moves at all.
-   */
-
-  public boolean MoveIsAtAllPossible()
-  {
-    return m_positions[m_movenumber].MoveIsAtAllPossible();
-  }
-
-
-  /**
-   * Returns move number of last move.
-   */
-
-  public int GetMoveNumber() { return m_movenumber; }
-
-
-  /**
-   * Returns the player in turn to play (if there are no legal moves
-   * Score.NOBODY is returned).
-   */
-
-  public int GetWhoseTurn()
-  {
-    if (m_movenumber <= 0) return Score.BLACK;
-
-    int player = GetLastMove().GetPlayer();
-    int opponent = Score.GetOpponent(player);
-
-    if (MoveIsPossible(opponent)) return opponent;
-
-    if (MoveIsPossible(player)) return player;
-
-    return Score.NOBODY;
-  }
-
-
-  /**
-   * Returns a vector of the squares that were changed by the last move.
-   * The move that was actually played is at index 0. At the initial
-   * position the length of the vector returned is zero. (Could be used
-   * for faster updates of a graphical board).
-   */
-
-  public Move[] TurnedByLastMove()
-  {
-    if (m_movenumber <= 0) return new Move[0];
-
-    Move lastmove = GetLastMove();
-    Move m[] = new Move[28];
-    int n = 0;
-
-    m[n++] = new Move(lastmove);
-
-    for (int i=1; i<9; i++)
-    for (int j=1; j<9; j++)
-      if ((i != lastmove.GetX() || j != lastmove.GetY()) &&
-	  m_positions[m_movenumber].GetSquare(i, j) !=
-	  m_positions[m_movenumber-1].GetSquare(i, j))
-	m[n++] = new Move(i, j, lastmove.GetPlayer());
-
-    Move retval[] = new Move[n];
-
-    for (int i = 0; i < n; i++) retval[i] = new Move(m[i]);
-
-    return retval;
-  }
-
-
-  /**
-   * Tells if exactly the same moves were played in two games
-   */
-
-  public boolean Identical(Game g)
-  {
-    if (m_movenumber != g.m_movenumber) return false;
-
-    for (int i=1; i<m_movenumber; i++)
-      if (m_positions[i].GetLastMove().GetX() !=
-	    g.m_positions[i].GetLastMove().GetX() ||
-	  m_positions[i].GetLastMove().GetY() !=
-	    g.m_positions[i].GetLastMove().GetY())
-	return false;
-
-    return true;
-  }
-};
+
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+
+/**
+ * The class Game represents a complete or incomplete Othello game. It uses
+ * the classes Score and Move.
+ * You can make moves, take back one move at a time, reset to initial position
+ * and get certain data on the current position.
+ * <P>
+ * Every position in the game is stored as two bitboards (see class Bitboard)
+ * in arrays that are allocated when the game is created, together with the
+ * move that lead to it, so no objects are created when moves are made, taken
+ * back or checked for legality. The legal moves of both players are
+ * computed once for every position when it is reached, since they are
+ * asked for (by GetWhoseTurn() for instance) far more often than moves are
+ * made.
+ * @see Score
+ * @see Move
+ */
+
+public class Game
+{
+  /**
+   * The pieces of each color in every position of the game (index 0 is the
+   * initial position), the square index of the move that lead to each
+   * position and the player who made it.
+   */
+
+  private long m_white_bits[];
+  private long m_black_bits[];
+  private int m_move_square[];
+  private int m_move_player[];
+  private int m_movenumber;
+
+  /**
+   * The legal moves of each color in every position of the game.
+   */
+
+  private long m_white_moves[];
+  private long m_black_moves[];
+
+  /**
+   * Creates a game with the initial position.
+   */
+
+  public Game()
+  {
+    m_white_bits = new long[61];
+    m_black_bits = new long[61];
+    m_move_square = new int[61];
+    m_move_player = new int[61];
+    m_white_moves = new long[61];
+    m_black_moves = new long[61];
+    Reset();
+  }
+
+
+  /**
+   * Creates a copy of the game g, with the same moves.
+   */
+
+  public Game(Game g)
+  {
+    m_white_bits = g.m_white_bits.clone();
+    m_black_bits = g.m_black_bits.clone();
+    m_move_square = g.m_move_square.clone();
+    m_move_player = g.m_move_player.clone();
+    m_white_moves = g.m_white_moves.clone();
+    m_black_moves = g.m_black_moves.clone();
+    m_movenumber = g.m_movenumber;
+  }
+
+
+  /**
+   * Resets to the initial position.
+   */
+
+  public void Reset()
+  {
+    m_white_bits[0] = Bitboard.SquareBit(4, 4) | Bitboard.SquareBit(5, 5);
+    m_black_bits[0] = Bitboard.SquareBit(5, 4) | Bitboard.SquareBit(4, 5);
+    m_move_player[0] = Score.NOBODY;
+    m_movenumber = 0;
+    ComputeLegalMoves();
+  }
+
+
+  /**
+   * Makes the move m. Returns false if the move is not legal or when called
+   * with a move where the player is Score.NOBODY.
+   */
+
+  public boolean MakeMove(Move m)
+  {
+    if (m.GetPlayer() == Score.NOBODY) return false;
+    if (GetWhoseTurn() != m.GetPlayer()) return false;
+    if (! MoveIsLegal(m)) return false;
+
+    int sq = Bitboard.Square(m.GetX(), m.GetY());
+    long playerbits = GetBits(m.GetPlayer());
+    long opponentbits = GetBits(Score.GetOpponent(m.GetPlayer()));
+    long flips = Bitboard.ComputeFlips(sq, playerbits, opponentbits);
+
+    playerbits |= flips | (1L << sq);
+    opponentbits &= ~flips;
+
+    m_movenumber++;
+
+    if (m.GetPlayer() == Score.WHITE)
+    {
+      m_white_bits[m_movenumber] = playerbits;
+      m_black_bits[m_movenumber] = opponentbits;
+    }
+    else
+    {
+      m_black_bits[m_movenumber] = playerbits;
+      m_white_bits[m_movenumber] = opponentbits;
+    }
+
+    m_move_square[m_movenumber] = sq;
+    m_move_player[m_movenumber] = m.GetPlayer();
+    ComputeLegalMoves();
+
+    return true;
+  }
+
+
+  /**
+   * Takes back a move. Returns true if not at the initial position.
+   */
+
+  public boolean TakeBackMove()
+  {
+    if (m_movenumber <= 0) return false;
+
+    m_movenumber--;
+
+    return true;
+  }
+
+
+  /**
+   * Returns the piece at (x, y). Returns Score.NOBODY if the square is not
+   * occupied.
+   */
+
+  public int GetSquare(int x, int y)
+  {
+    if (x < 1 || x > 8 || y < 1 || y > 8) return Score.NOBODY;
+
+    long bit = Bitboard.SquareBit(x, y);
+
+    if ((m_white_bits[m_movenumber] & bit) != 0) return Score.WHITE;
+    if ((m_black_bits[m_movenumber] & bit) != 0) return Score.BLACK;
+
+    return Score.NOBODY;
+  }
+
+
+  /**
+   * Returns the score for player.
+   */
+
+  public int GetScore(int player)
+  {
+    return Long.bitCount(GetBits(player));
+  }
+
+
+  /**
+   * Returns the last move. Returns null if at the initial position.
+   */
+
+  public Move GetLastMove() { return GetMove(m_movenumber); }
+
+
+  /**
+   * Returns the moves made in the game, null if parameter i is invalid.
+   */
+
+  public Move GetMove(int i)
+  {
+    if (i <=0 || i > m_movenumber) return null;
+
+    return new Move(Bitboard.SquareX(m_move_square[i]),
+      Bitboard.SquareY(m_move_square[i]), m_move_player[i]);
+  }
+
+
+  /**
+   * Checks if move m is legal.
+   */
+
+  public boolean MoveIsLegal(Move m)
+  {
+    if (m.GetPlayer() == Score.NOBODY) return false;
+    if (m.GetX() < 1 || m.GetX() > 8 || m.GetY() < 1 || m.GetY() > 8)
+      return false;
+
+    return (GetLegalMoves(m.GetPlayer()) &
+      Bitboard.SquareBit(m.GetX(), m.GetY())) != 0;
+  }
+
+
+  /**
+   * Checks if there is a legal move for player.
+   */
+
+  public boolean MoveIsPossible(int player)
+  {
+    return GetLegalMoves(player) != 0;
+  }
+
+
+  /**
+   * Returns the squares where player can move in the current position, the
+   * square (x, y) as bit number (x-1)*8 + (y-1).
+   */
+
+  public long GetLegalMoves(int player)
+  {
+    if (player == Score.WHITE) return m_white_moves[m_movenumber];
+    if (player == Score.BLACK) return m_black_moves[m_movenumber];
+
+    return 0;
+  }
+
+
+  /**
+   * Checks if there are any legal moves at all.
+   */
+
+  public boolean MoveIsAtAllPossible()
+  {
+    return MoveIsPossible(Score.WHITE) || MoveIsPossible(Score.BLACK);
+  }
+
+
+  /**
+   * Returns move number of last move.
+   */
+
+  public int GetMoveNumber() { return m_movenumber; }
+
+
+  /**
+   * Returns the player in turn to play (if there are no legal moves
+   * Score.NOBODY is returned).
+   */
+
+  public int GetWhoseTurn()
+  {
+    if (m_movenumber <= 0) return Score.BLACK;
+
+    int player = m_move_player[m_movenumber];
+    int opponent = Score.GetOpponent(player);
+
+    if (MoveIsPossible(opponent)) return opponent;
+
+    if (MoveIsPossible(player)) return player;
+
+    return Score.NOBODY;
+  }
+
+
+  /**
+   * Returns a vector of the squares that were changed by the last move.
+   * The move that was actually played is at index 0. At the initial
+   * position the length of the vector returned is zero. (Could be used
+   * for faster updates of a graphical board).
+   */
+
+  public Move[] TurnedByLastMove()
+  {
+    if (m_movenumber <= 0) return new Move[0];
+
+    int player = m_move_player[m_movenumber];
+    long turned = GetBits(player) & ~(1L << m_move_square[m_movenumber]) &
+      (player == Score.WHITE ? m_black_bits[m_movenumber-1] :
+        m_white_bits[m_movenumber-1]);
+
+    Move retval[] = new Move[Long.bitCount(turned) + 1];
+    int n = 0;
+
+    retval[n++] = GetLastMove();
+
+    for (; turned != 0; turned &= turned - 1)
+    {
+      int sq = Long.numberOfTrailingZeros(turned);
+
+      retval[n++] = new Move(Bitboard.SquareX(sq), Bitboard.SquareY(sq),
+        player);
+    }
+
+    return retval;
+  }
+
+
+  /**
+   * Tells if exactly the same moves were played in two games
+   */
+
+  public boolean Identical(Game g)
+  {
+    if (m_movenumber != g.m_movenumber) return false;
+
+    for (int i=1; i<m_movenumber; i++)
+      if (m_move_square[i] != g.m_move_square[i])
+	return false;
+
+    return true;
+  }
+
+
+  /**
+   * Returns the pieces of player in the current position as a bitboard (see
+   * class Bitboard).
+   */
+
+  long GetBits(int player)
+  {
+    if (player == Score.WHITE) return m_white_bits[m_movenumber];
+    if (player == Score.BLACK) return m_black_bits[m_movenumber];
+
+    return 0;
+  }
+
+
+  /**
+   * Computes the legal moves of both players in the current position.
+   */
+
+  private void ComputeLegalMoves()
+  {
+    long white = m_white_bits[m_movenumber];
+    long black = m_black_bits[m_movenumber];
+
+    m_white_moves[m_movenumber] = Bitboard.GenerateMoves(white, black);
+    m_black_moves[m_movenumber] = Bitboard.GenerateMoves(black, white);
+  }
+};
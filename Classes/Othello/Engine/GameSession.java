@@ -0,0 +1,332 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+
+/**
+ * The class GameSession is one of the games hosted by a GameSessionManager.
+ * It has the same kind of functions as CommandInterface, but it does not
+ * own an engine: when a move is to be computed an engine is borrowed from
+ * the EnginePool of the manager and given back when the move is made.
+ * <P>
+ * All functions may be called from any thread. While a move is computed
+ * the game can not be changed (the functions that would change it return
+ * false), and once the session is closed nothing more can be done with it.
+ */
+
+public class GameSession implements Runnable
+{
+  private long m_id;
+  private GameSessionManager m_manager;
+  private Game m_game = new Game();
+  private int m_level;
+  private long m_move_time = 0;
+  private long m_deadline = 0;
+  private boolean m_calculating = false;
+  private boolean m_interrupted = false;
+  private boolean m_closed = false;
+  private Engine m_engine;
+  private CommandInterfaceListener m_listener;
+
+
+  /**
+   * Created by GameSessionManager.NewSession().
+   */
+
+  GameSession(GameSessionManager manager, long id, int level)
+  {
+    m_manager = manager;
+    m_id = id;
+    m_level = level;
+  }
+
+
+  /**
+   * Computes the move on a thread of the executor of the manager.
+   */
+
+  public void run()
+  {
+    Engine engine = m_manager.GetEnginePool().Acquire(m_level);
+    boolean interrupted;
+
+    synchronized (this)
+    {
+      m_engine = engine;
+      interrupted = m_interrupted;
+    }
+
+    // The game is not changed by anyone else while m_calculating is set:
+
+    Move move = null;
+    PositionCache cache = m_manager.GetPositionCache();
+
+    if (! interrupted)
+    {
+      if (m_deadline != 0)
+        move = engine.ComputeMove(m_game, m_deadline);
+      else if (cache == null)
+        move = engine.ComputeMove(m_game);
+      else
+      {
+        // Moves computed without a time limit are shared with the other
+        // games:
+
+        move = cache.GetMove(m_game, m_level);
+
+        if (move == null)
+        {
+          move = engine.ComputeMove(m_game);
+
+          if (move != null) cache.PutMove(m_game, m_level, move);
+        }
+      }
+    }
+
+    CommandInterfaceListener listener;
+
+    synchronized (this)
+    {
+      m_engine = null;
+
+      if (move != null && ! m_closed) m_game.MakeMove(move);
+
+      m_calculating = false;
+
+      listener = m_listener;
+      m_listener = null;
+    }
+
+    m_manager.GetEnginePool().Release(engine);
+
+    if (listener != null) listener.ComputationFinished(move);
+  }
+
+
+  public long GetId() { return m_id; }
+
+
+  public synchronized int GetSquare(int x, int y)
+  {
+    return m_game.GetSquare(x, y);
+  }
+
+
+  public synchronized int GetScore(int player)
+  {
+    return m_game.GetScore(player);
+  }
+
+
+  public synchronized int GetWhoseTurn()
+  {
+    return m_game.GetWhoseTurn();
+  }
+
+
+  public synchronized int GetMoveNumber()
+  {
+    return m_game.GetMoveNumber();
+  }
+
+
+  /**
+   * Returns the last move written like "F5", or null at the initial
+   * position.
+   */
+
+  public synchronized String GetLastMove()
+  {
+    Move m = m_game.GetLastMove();
+
+    if (m == null) return null;
+
+    return "" + (char) ('A' + m.GetX() - 1) + m.GetY();
+  }
+
+
+  public synchronized int GetLevel() { return m_level; }
+
+
+  public synchronized boolean SetLevel(int level)
+  {
+    if (m_calculating || m_closed) return false;
+
+    m_level = level;
+    return true;
+  }
+
+
+  /**
+   * Sets the time in milliseconds that a computed move may take (see
+   * CommandInterface.SetMoveTime()).
+   */
+
+  public synchronized boolean SetMoveTime(long millis)
+  {
+    if (m_calculating || m_closed) return false;
+
+    m_move_time = millis;
+    return true;
+  }
+
+
+  /**
+   * Makes the move (x, y) for the player in turn. Returns false if the move
+   * is not legal or if a move is being computed.
+   */
+
+  public synchronized boolean MakeMove(int x, int y)
+  {
+    if (m_calculating || m_closed) return false;
+
+    return m_game.MakeMove(new Move(x, y, m_game.GetWhoseTurn()));
+  }
+
+
+  public synchronized boolean TakeBackMove()
+  {
+    if (m_calculating || m_closed) return false;
+
+    return m_game.TakeBackMove();
+  }
+
+
+  public synchronized boolean NewGame()
+  {
+    if (m_calculating || m_closed) return false;
+
+    m_game.Reset();
+    return true;
+  }
+
+
+  /**
+   * Starts computing a move for the player in turn and makes it. listener
+   * is called (on the thread of the executor) when it is done. Returns
+   * false (and does not call listener) if a move is already being computed,
+   * if the game is over, or if the executor has too many computations
+   * waiting.
+   */
+
+  public synchronized boolean ComputeMove(CommandInterfaceListener listener)
+  {
+    return ComputeMove(listener, m_move_time);
+  }
+
+
+  /**
+   * Starts computing a move and returns a future that is completed with the
+   * move when it has been made (see CommandInterface.ComputeMoveAsync()).
+   */
+
+  public synchronized CompletableFuture<Move> ComputeMoveAsync()
+  {
+    return ComputeMoveAsync(m_move_time);
+  }
+
+
+  /**
+   * The same as ComputeMoveAsync(), but the move must be ready within millis
+   * milliseconds.
+   */
+
+  public synchronized CompletableFuture<Move> ComputeMoveAsync(long millis)
+  {
+    MoveFuture future = new MoveFuture()
+    {
+      void Interrupt() { InterruptComputation(); }
+    };
+
+    if (m_calculating || m_closed || m_game.GetWhoseTurn() == Score.NOBODY)
+    {
+      future.completeExceptionally(new IllegalStateException(
+        "a move can not be computed now"));
+      return future;
+    }
+
+    future.m_started = true;
+
+    if (! ComputeMove(future, millis))
+    {
+      future.m_started = false;
+      future.completeExceptionally(new RejectedExecutionException(
+        "too many computations waiting"));
+    }
+
+    return future;
+  }
+
+
+  private boolean ComputeMove(CommandInterfaceListener listener, long millis)
+  {
+    if (m_calculating || m_closed) return false;
+    if (m_game.GetWhoseTurn() == Score.NOBODY) return false;
+
+    m_calculating = true;
+    m_interrupted = false;
+    m_listener = listener;
+
+    if (millis > 0)
+      m_deadline = System.nanoTime() + millis * 1000000;
+    else
+      m_deadline = 0;
+
+    if (! m_manager.GetExecutor().Submit(this))
+    {
+      m_calculating = false;
+      m_listener = null;
+      return false;
+    }
+
+    return true;
+  }
+
+
+  public synchronized boolean IsCalculating() { return m_calculating; }
+
+
+  /**
+   * Tells the computation to stop as soon as possible (the listener is then
+   * called with null).
+   */
+
+  public synchronized void InterruptComputation()
+  {
+    if (! m_calculating) return;
+
+    m_interrupted = true;
+
+    if (m_engine != null) m_engine.SetInterrupt(true);
+  }
+
+
+  /**
+   * Tells the computation to complete the search depth it is working on and
+   * make the best move it has found (see CommandInterface.StopComputation()).
+   */
+
+  public synchronized void StopComputation()
+  {
+    if (m_calculating && m_engine != null) m_engine.SetSoftStop(true);
+  }
+
+
+  public synchronized boolean IsClosed() { return m_closed; }
+
+
+  /**
+   * Called by GameSessionManager.CloseSession().
+   */
+
+  synchronized void Close()
+  {
+    InterruptComputation();
+    m_closed = true;
+  }
+}
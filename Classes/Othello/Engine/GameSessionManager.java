@@ -0,0 +1,129 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * The class GameSessionManager hosts many games at the same time, each one
+ * a GameSession that is found by its id. The games share the engines of an
+ * EnginePool and the threads of an EngineExecutor, so the cost of a game
+ * that is not computing a move is little more than the game itself.
+ * <P>
+ * The games can also share a cache of computed moves (see
+ * SetPositionCache()), so that the positions many games pass through are
+ * only searched once.
+ * <P>
+ * All functions may be called from any thread.
+ */
+
+public class GameSessionManager
+{
+  private ConcurrentHashMap<Long, GameSession> m_sessions =
+    new ConcurrentHashMap<Long, GameSession>();
+  private AtomicLong m_next_id = new AtomicLong(1);
+  private EngineExecutor m_executor;
+  private EnginePool m_pool;
+  private volatile PositionCache m_cache;
+
+
+  /**
+   * Creates a manager that computes moves on the shared executor (see
+   * EngineExecutor.GetShared()).
+   */
+
+  public GameSessionManager()
+  {
+    this(EngineExecutor.GetShared());
+  }
+
+
+  /**
+   * Creates a manager that computes moves on executor. The pool keeps as
+   * many idle engines as the executor has threads.
+   */
+
+  public GameSessionManager(EngineExecutor executor)
+  {
+    m_executor = executor;
+    m_pool = new EnginePool(executor.GetThreads());
+  }
+
+
+  /**
+   * Creates a new game at the initial position, where moves are computed at
+   * strength level level, and returns its id.
+   */
+
+  public long NewSession(int level)
+  {
+    long id = m_next_id.getAndIncrement();
+
+    m_sessions.put(Long.valueOf(id), new GameSession(this, id, level));
+
+    return id;
+  }
+
+
+  /**
+   * Returns the game with the id id, or null if there is none (or if it has
+   * been closed).
+   */
+
+  public GameSession GetSession(long id)
+  {
+    return m_sessions.get(Long.valueOf(id));
+  }
+
+
+  /**
+   * Closes the game with the id id, interrupting a move that is being
+   * computed for it. Returns false if there is no such game.
+   */
+
+  public boolean CloseSession(long id)
+  {
+    GameSession session = m_sessions.remove(Long.valueOf(id));
+
+    if (session == null) return false;
+
+    session.Close();
+
+    return true;
+  }
+
+
+  /**
+   * Returns the number of games that are open.
+   */
+
+  public int GetSessionCount() { return m_sessions.size(); }
+
+
+  /**
+   * Returns the engines used by the games (to set the opening book or the
+   * search listener, for instance).
+   */
+
+  public EnginePool GetEnginePool() { return m_pool; }
+
+
+  public EngineExecutor GetExecutor() { return m_executor; }
+
+
+  /**
+   * Sets the cache where the games store and look up moves that are
+   * computed without a time limit (see class PositionCache). null (the
+   * default) means that no cache is used. The cache should be cleared when
+   * the evaluation of the engine pool is changed.
+   */
+
+  public void SetPositionCache(PositionCache cache) { m_cache = cache; }
+
+
+  public PositionCache GetPositionCache() { return m_cache; }
+}
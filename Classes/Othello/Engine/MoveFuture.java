@@ -0,0 +1,63 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+
+/**
+ * The future returned by CommandInterface.ComputeMoveAsync() and
+ * GameSession.ComputeMoveAsync(). It is completed with the computed move,
+ * or with a CancellationException if the computation was interrupted. If it
+ * is completed by someone else first (cancelled, or failed by a timeout
+ * such as orTimeout()), Interrupt() is called so that the engine stops
+ * searching for a move that nobody is waiting for.
+ */
+
+abstract class MoveFuture extends CompletableFuture<Move>
+  implements CommandInterfaceListener
+{
+  /**
+   * Set while the computation has been started and not finished, so that a
+   * future that fails before it is started does not interrupt some other
+   * computation.
+   */
+
+  volatile boolean m_started = false;
+
+
+  MoveFuture()
+  {
+    whenComplete(new BiConsumer<Move, Throwable>()
+    {
+      public void accept(Move m, Throwable t)
+      {
+        if (t != null && m_started) Interrupt();
+      }
+    });
+  }
+
+
+  public void ComputationFinished(Move m)
+  {
+    m_started = false;
+
+    if (m != null)
+      complete(m);
+    else
+      completeExceptionally(new CancellationException(
+        "computation interrupted"));
+  }
+
+
+  /**
+   * Called when the future fails before the move has been computed. Should
+   * interrupt the computation.
+   */
+
+  abstract void Interrupt();
+}
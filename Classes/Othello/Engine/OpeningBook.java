@@ -0,0 +1,177 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+
+/**
+ * The class OpeningBook holds moves for positions early in the game, so
+ * that Engine can play them without searching (see Engine.SetOpeningBook()).
+ * <P>
+ * Positions are looked up by the key of their canonical form (see
+ * Bitboard.CanonicalKey()), so a book move is found for all the eight
+ * positions that are mirror images or rotations of each other, and for
+ * both colors. The moves are stored for the canonical form and are
+ * transformed back to the actual position when they are looked up.
+ * <P>
+ * The book is stored in a compact binary format that is used as it is,
+ * without being converted to objects, so it can just as well be a memory
+ * mapped file as a buffer read from a stream:
+ * <PRE>
+ *   int   MAGIC
+ *   int   number of entries
+ *   entry entries[number of entries]   (sorted by key)
+ * </PRE>
+ * where each entry is twelve bytes:
+ * <PRE>
+ *   long  canonical key of the position
+ *   short square index of the move, in the canonical form
+ *   short weight (how often the move should be chosen)
+ * </PRE>
+ * A position can have several entries, one for each move. All numbers are
+ * big endian. Books are written by OpeningBookBuilder.
+ */
+
+public class OpeningBook
+{
+  static final int MAGIC = 0x4f424b31; // "OBK1"
+  static final int HEADER_BYTES = 8;
+  static final int ENTRY_BYTES = 12;
+
+  private ByteBuffer m_buffer;
+  private int m_entries;
+
+
+  /**
+   * Creates a book from buffer, which holds a book in the binary format
+   * from its current position. The buffer is used directly (not copied).
+   */
+
+  public OpeningBook(ByteBuffer buffer) throws IOException
+  {
+    m_buffer = buffer.slice();
+
+    if (m_buffer.capacity() < HEADER_BYTES || m_buffer.getInt(0) != MAGIC)
+      throw new IOException("Not an opening book");
+
+    m_entries = m_buffer.getInt(4);
+
+    if (m_entries < 0 ||
+        m_buffer.capacity() < HEADER_BYTES + (long) m_entries * ENTRY_BYTES)
+      throw new IOException("Opening book is truncated");
+  }
+
+
+  /**
+   * Reads a book in the binary format from in.
+   */
+
+  public static OpeningBook Read(InputStream in) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte buf[] = new byte[8192];
+    int n;
+
+    while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+
+    return new OpeningBook(ByteBuffer.wrap(out.toByteArray()));
+  }
+
+
+  /**
+   * Returns the number of entries (moves) in the book.
+   */
+
+  public int GetSize() { return m_entries; }
+
+
+  /**
+   * Returns a book move for the position in g, or null if the position is
+   * not in the book. If there are several moves, one of them is selected
+   * according to their weights using the random number random.
+   */
+
+  public Move GetMove(Game g, int random)
+  {
+    int player = g.GetWhoseTurn();
+
+    if (player == Score.NOBODY) return null;
+
+    int sq = Lookup(g.GetBits(player), g.GetBits(Score.GetOpponent(player)),
+      random);
+
+    if (sq < 0) return null;
+
+    return new Move(Bitboard.SquareX(sq), Bitboard.SquareY(sq), player);
+  }
+
+
+  /**
+   * Returns the square index of a book move for the owner of playerbits, or
+   * -1 if the position is not in the book.
+   */
+
+  int Lookup(long playerbits, long opponentbits, int random)
+  {
+    int s = Bitboard.CanonicalSymmetry(playerbits, opponentbits);
+    long key = Bitboard.Key(Bitboard.Transform(playerbits, s),
+      Bitboard.Transform(opponentbits, s));
+
+    // Binary search for the first entry with the key:
+
+    int lo = 0;
+    int hi = m_entries;
+
+    while (lo < hi)
+    {
+      int mid = (lo + hi) >>> 1;
+
+      if (EntryKey(mid) < key) lo = mid + 1;
+      else hi = mid;
+    }
+
+    int total = 0;
+
+    for (int i = lo; i < m_entries && EntryKey(i) == key; i++)
+      total += EntryWeight(i);
+
+    if (total <= 0) return -1;
+
+    int r = (random & Integer.MAX_VALUE) % total;
+    int i;
+
+    for (i = lo; r >= EntryWeight(i); i++) r -= EntryWeight(i);
+
+    int sq = Bitboard.InverseTransformSquare(EntryMove(i), s);
+
+    // Protect against corrupt books and (very unlikely) key collisions:
+
+    if (Bitboard.ComputeFlips(sq, playerbits, opponentbits) == 0) return -1;
+
+    return sq;
+  }
+
+
+  private long EntryKey(int i)
+  {
+    return m_buffer.getLong(HEADER_BYTES + i * ENTRY_BYTES);
+  }
+
+
+  private int EntryMove(int i)
+  {
+    return m_buffer.getShort(HEADER_BYTES + i * ENTRY_BYTES + 8) & 63;
+  }
+
+
+  private int EntryWeight(int i)
+  {
+    return m_buffer.getShort(HEADER_BYTES + i * ENTRY_BYTES + 10) & 0xffff;
+  }
+}
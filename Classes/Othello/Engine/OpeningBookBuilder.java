@@ -0,0 +1,146 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The class OpeningBookBuilder collects moves from games and writes them as
+ * an opening book in the format that is read by OpeningBook. The weight of
+ * a move is the number of times it was played in the position (or in any
+ * of the positions that are mirror images or rotations of it).
+ */
+
+public class OpeningBookBuilder
+{
+  /**
+   * Maps the canonical key of every position that has been seen to the
+   * number of times each move (as a square index in the canonical form) has
+   * been played in it.
+   */
+
+  private Map<Long, int[]> m_positions = new HashMap<Long, int[]>();
+
+
+  /**
+   * Adds the first plies moves of the game g.
+   */
+
+  public void AddGame(Game g, int plies)
+  {
+    Game replay = new Game();
+
+    for (int i=1; i <= plies && i <= g.GetMoveNumber(); i++)
+    {
+      Move m = g.GetMove(i);
+
+      AddMove(replay.GetBits(m.GetPlayer()),
+        replay.GetBits(Score.GetOpponent(m.GetPlayer())),
+        Bitboard.Square(m.GetX(), m.GetY()));
+
+      if (! replay.MakeMove(m)) return;
+    }
+  }
+
+
+  /**
+   * Plays games games between two engines at strength level strength,
+   * starting with the random seed seed, and adds the first plies moves of
+   * each. The engines choose randomly between moves of equal value, which
+   * makes the games differ from each other.
+   */
+
+  public void AddSelfPlayGames(int games, int plies, int strength, int seed)
+  {
+    Engine engine = new Engine(strength, seed);
+
+    for (int i=0; i < games; i++)
+    {
+      Game g = new Game();
+
+      while (g.GetMoveNumber() < plies && g.GetWhoseTurn() != Score.NOBODY)
+      {
+        Move m = engine.ComputeMove(g);
+
+        if (m == null) break;
+
+        g.MakeMove(m);
+      }
+
+      AddGame(g, plies);
+    }
+  }
+
+
+  /**
+   * Writes the book to out. Moves that have been played fewer than
+   * mincount times are left out, and so are moves that have not been played
+   * at all when mincount is less than 1.
+   */
+
+  public void Write(OutputStream out, int mincount) throws IOException
+  {
+    Long keys[] = m_positions.keySet().toArray(new Long[0]);
+    int min = Math.max(mincount, 1);
+    int entries = 0;
+
+    Arrays.sort(keys);
+
+    for (int i=0; i < keys.length; i++)
+    {
+      int counts[] = m_positions.get(keys[i]);
+
+      for (int sq=0; sq < 64; sq++) if (counts[sq] >= min) entries++;
+    }
+
+    DataOutputStream data = new DataOutputStream(out);
+
+    data.writeInt(OpeningBook.MAGIC);
+    data.writeInt(entries);
+
+    for (int i=0; i < keys.length; i++)
+    {
+      int counts[] = m_positions.get(keys[i]);
+
+      for (int sq=0; sq < 64; sq++)
+      if (counts[sq] >= min)
+      {
+        data.writeLong(keys[i].longValue());
+        data.writeShort(sq);
+        data.writeShort(Math.min(counts[sq], 0xffff));
+      }
+    }
+
+    data.flush();
+  }
+
+
+  /**
+   * Adds the move at square index sq for the owner of playerbits.
+   */
+
+  void AddMove(long playerbits, long opponentbits, int sq)
+  {
+    int s = Bitboard.CanonicalSymmetry(playerbits, opponentbits);
+    Long key = Long.valueOf(Bitboard.Key(Bitboard.Transform(playerbits, s),
+      Bitboard.Transform(opponentbits, s)));
+
+    int counts[] = m_positions.get(key);
+
+    if (counts == null)
+    {
+      counts = new int[64];
+      m_positions.put(key, counts);
+    }
+
+    counts[Bitboard.TransformSquare(sq, s)]++;
+  }
+}
@@ -0,0 +1,454 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * The class PatternEvaluator evaluates positions by looking up the pieces
+ * on groups of squares (patterns) in tables of weights, which are trained
+ * from games instead of being set by hand (see PatternTrainer and
+ * Engine.SetPatternEvaluator()).
+ * <P>
+ * A pattern is a fixed list of squares, such as an edge together with the
+ * two squares diagonally next to its corners. Every square is empty, has a
+ * piece of the player or a piece of the opponent, so the contents of
+ * a pattern of n squares is a number from 0 to 3^n - 1 that is used as an
+ * index into the table of the pattern. The same table is used for all the
+ * mirror images and rotations of a pattern that are on the board. Besides
+ * the patterns there is a table indexed by the difference in the number of
+ * legal moves (mobility) and a single weight that is always added.
+ * <P>
+ * The value of a position is the sum of the weights that are looked up.
+ * What is important changes during the game, so there is a separate set of
+ * tables for each of PHASES phases, decided by the number of pieces on the
+ * board. Values are in the same scale as Engine uses: 100 is one piece at
+ * the end of the game.
+ * <P>
+ * The weights are stored in a compact binary format:
+ * <PRE>
+ *   int   MAGIC
+ *   int   number of phases
+ *   int   number of weights in each phase
+ *   short weights[number of phases][number of weights in each phase]
+ * </PRE>
+ * All numbers are big endian. Unlike an opening book the weights are copied
+ * into arrays when they are read, since they are used for every position
+ * that is evaluated.
+ */
+
+public class PatternEvaluator
+{
+  static final int MAGIC = 0x50415431; // "PAT1"
+  static final int PHASES = 6;
+
+  /**
+   * The patterns, with their squares given as (x, y) pairs as they are
+   * placed in the corner at (1, 1). The tables are indexed with the first
+   * square as the most significant digit.
+   */
+
+  private static final int PATTERNS[][] =
+  {
+    // The edge and the two X squares:
+    { 1,1, 2,1, 3,1, 4,1, 5,1, 6,1, 7,1, 8,1, 2,2, 7,2 },
+    // The three times three squares in the corner:
+    { 1,1, 2,1, 3,1, 1,2, 2,2, 3,2, 1,3, 2,3, 3,3 },
+    // The two times five squares in the corner:
+    { 1,1, 2,1, 3,1, 4,1, 5,1, 1,2, 2,2, 3,2, 4,2, 5,2 },
+    // The diagonals through the corner and next to it:
+    { 1,1, 2,2, 3,3, 4,4, 5,5, 6,6, 7,7, 8,8 },
+    { 1,2, 2,3, 3,4, 4,5, 5,6, 6,7, 7,8 },
+    // The second, third and fourth rows:
+    { 1,2, 2,2, 3,2, 4,2, 5,2, 6,2, 7,2, 8,2 },
+    { 1,3, 2,3, 3,3, 4,3, 5,3, 6,3, 7,3, 8,3 },
+    { 1,4, 2,4, 3,4, 4,4, 5,4, 6,4, 7,4, 8,4 }
+  };
+
+  /**
+   * The largest mobility difference that has a weight of its own (larger
+   * differences use the weight of the largest).
+   */
+
+  static final int MAX_MOBILITY = 24;
+
+  /**
+   * s_offset holds where the table of every placement of every pattern on
+   * the board starts among the weights of a phase. MOBILITY_OFFSET and
+   * BIAS_OFFSET are the offsets of the mobility table and the weight that is
+   * always added, and WEIGHTS the total number of weights in a phase.
+   * <P>
+   * The index of a placement is computed from groups of its squares, groups
+   * s_first[i] to s_first[i+1]-1 for placement i. No two squares of a group
+   * have the same y (or, if s_transposed is set for the group, the same x),
+   * so the pieces on the squares in s_mask can be moved to a single byte by
+   * a multiplication (see GetIndex()), and s_digits gives the part of the
+   * index for each possible value of that byte.
+   */
+
+  private static final int s_offset[];
+  private static final int s_first[];
+  private static final long s_mask[];
+  private static final boolean s_transposed[];
+  private static final char s_digits[][];
+  static final int MOBILITY_OFFSET;
+  static final int BIAS_OFFSET;
+  static final int WEIGHTS;
+
+  static
+  {
+    int offset[] = new int[PATTERNS.length * 8];
+    int first[] = new int[PATTERNS.length * 8 + 1];
+    long mask[] = new long[PATTERNS.length * 8 * 10];
+    boolean transposed[] = new boolean[PATTERNS.length * 8 * 10];
+    char digits[][] = new char[PATTERNS.length * 8 * 10][];
+    int placements = 0;
+    int groups = 0;
+    int weights = 0;
+
+    for (int p=0; p < PATTERNS.length; p++)
+    {
+      int n = PATTERNS[p].length / 2;
+      long seen[] = new long[8];
+
+      for (int s=0; s < 8; s++)
+      {
+        int sq[] = new int[n];
+        long bits = 0;
+
+        for (int i=0; i < n; i++)
+        {
+          sq[i] = Bitboard.TransformSquare(
+            Bitboard.Square(PATTERNS[p][2*i], PATTERNS[p][2*i+1]), s);
+          bits |= 1L << sq[i];
+        }
+
+        // Symmetric patterns cover the same squares in more than one
+        // symmetry, those placements are only used once:
+
+        boolean found = false;
+
+        for (int t=0; t < s; t++) if (seen[t] == bits) found = true;
+
+        seen[s] = bits;
+
+        if (found) continue;
+
+        offset[placements] = weights;
+        first[placements] = groups;
+        placements++;
+
+        groups += MakeGroups(sq, mask, transposed, digits, groups);
+      }
+
+      int size = 1;
+
+      for (int i=0; i < n; i++) size *= 3;
+
+      weights += size;
+    }
+
+    first[placements] = groups;
+
+    s_offset = new int[placements];
+    s_first = new int[placements + 1];
+    s_mask = new long[groups];
+    s_transposed = new boolean[groups];
+    s_digits = new char[groups][];
+
+    System.arraycopy(offset, 0, s_offset, 0, placements);
+    System.arraycopy(first, 0, s_first, 0, placements + 1);
+    System.arraycopy(mask, 0, s_mask, 0, groups);
+    System.arraycopy(transposed, 0, s_transposed, 0, groups);
+    System.arraycopy(digits, 0, s_digits, 0, groups);
+
+    MOBILITY_OFFSET = weights;
+    BIAS_OFFSET = MOBILITY_OFFSET + 2 * MAX_MOBILITY + 1;
+    WEIGHTS = BIAS_OFFSET + 1;
+  }
+
+  /**
+   * The number of weights that are looked up to evaluate a position (see
+   * GetFeatures()).
+   */
+
+  static final int FEATURES = s_offset.length + 2;
+
+  private short m_weights[][];
+
+  /**
+   * The number that identifies the weights (see GetId()), and the next
+   * free one.
+   */
+
+  private static final AtomicLong s_next_id = new AtomicLong(1);
+
+  private volatile long m_id = s_next_id.getAndIncrement();
+
+
+  /**
+   * Creates an evaluator where all weights are 0 (see PatternTrainer).
+   */
+
+  PatternEvaluator()
+  {
+    m_weights = new short[PHASES][WEIGHTS];
+  }
+
+
+  /**
+   * Creates an evaluator from buffer, which holds weights in the binary
+   * format from its current position.
+   */
+
+  public PatternEvaluator(ByteBuffer buffer) throws IOException
+  {
+    ByteBuffer b = buffer.slice();
+
+    if (b.capacity() < 12 || b.getInt(0) != MAGIC)
+      throw new IOException("Not pattern weights");
+
+    if (b.getInt(4) != PHASES || b.getInt(8) != WEIGHTS)
+      throw new IOException("Pattern weights are for other patterns");
+
+    if (b.capacity() < 12 + 2L * PHASES * WEIGHTS)
+      throw new IOException("Pattern weights are truncated");
+
+    m_weights = new short[PHASES][WEIGHTS];
+    b.position(12);
+
+    ShortBuffer weights = b.asShortBuffer();
+
+    for (int phase=0; phase < PHASES; phase++) weights.get(m_weights[phase]);
+  }
+
+
+  /**
+   * Reads weights in the binary format from in.
+   */
+
+  public static PatternEvaluator Read(InputStream in) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte buf[] = new byte[8192];
+    int n;
+
+    while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+
+    return new PatternEvaluator(ByteBuffer.wrap(out.toByteArray()));
+  }
+
+
+  /**
+   * Writes the weights to out in the binary format.
+   */
+
+  public void Write(OutputStream out) throws IOException
+  {
+    DataOutputStream data = new DataOutputStream(out);
+
+    data.writeInt(MAGIC);
+    data.writeInt(PHASES);
+    data.writeInt(WEIGHTS);
+
+    for (int phase=0; phase < PHASES; phase++)
+    for (int i=0; i < WEIGHTS; i++)
+      data.writeShort(m_weights[phase][i]);
+
+    data.flush();
+  }
+
+
+  /**
+   * Returns the value of the position for the owner of playerbits, when the
+   * opponent is to move (as at the leaves of the search in Engine, where the
+   * position after a move is evaluated for the player who made it).
+   */
+
+  final int Evaluate(long playerbits, long opponentbits)
+  {
+    short w[] = m_weights[GetPhase(playerbits, opponentbits)];
+    int sum = w[BIAS_OFFSET] +
+      w[MOBILITY_OFFSET + GetMobility(playerbits, opponentbits)];
+    long tplayerbits = Bitboard.Transpose(playerbits);
+    long topponentbits = Bitboard.Transpose(opponentbits);
+
+    for (int i=0; i < s_offset.length; i++)
+      sum += w[GetIndex(i, playerbits, opponentbits, tplayerbits,
+        topponentbits)];
+
+    // Never more than winning with all the pieces, so that the value of a
+    // won game (see Engine) is always better:
+
+    if (sum > 6400) return 6400;
+    if (sum < -6400) return -6400;
+
+    return sum;
+  }
+
+
+  /**
+   * Stores the offsets (among the weights of a phase) of the FEATURES
+   * weights that are added by Evaluate() in features.
+   */
+
+  static void GetFeatures(long playerbits, long opponentbits, int features[])
+  {
+    long tplayerbits = Bitboard.Transpose(playerbits);
+    long topponentbits = Bitboard.Transpose(opponentbits);
+    int n = 0;
+
+    for (int i=0; i < s_offset.length; i++)
+      features[n++] = GetIndex(i, playerbits, opponentbits, tplayerbits,
+        topponentbits);
+
+    features[n++] = MOBILITY_OFFSET + GetMobility(playerbits, opponentbits);
+    features[n++] = BIAS_OFFSET;
+  }
+
+
+  /**
+   * Returns the phase (0 to PHASES-1) of the position, from the number of
+   * pieces on the board.
+   */
+
+  static int GetPhase(long playerbits, long opponentbits)
+  {
+    int pieces = Long.bitCount(playerbits | opponentbits);
+
+    return Math.min((pieces - 4) * PHASES / 60, PHASES - 1);
+  }
+
+
+  /**
+   * Returns the weights of phase, which the caller may change (so the
+   * evaluator gets a new id).
+   */
+
+  short[] GetWeights(int phase)
+  {
+    m_id = s_next_id.getAndIncrement();
+
+    return m_weights[phase];
+  }
+
+
+  /**
+   * Returns a number that is different for every evaluator, and that
+   * changes when the weights may have been changed, so that values that
+   * were computed with different weights are never taken for each other
+   * (see Engine.SetEvaluationContext()).
+   */
+
+  long GetId() { return m_id; }
+
+
+  /**
+   * Returns the offset of the weight for the contents of placement i (the
+   * position is also given transposed, for the groups that use it).
+   */
+
+  private static int GetIndex(int i, long playerbits, long opponentbits,
+    long tplayerbits, long topponentbits)
+  {
+    int index = s_offset[i];
+
+    for (int g = s_first[i]; g < s_first[i+1]; g++)
+    {
+      long m = s_mask[g];
+      long p = s_transposed[g] ? tplayerbits : playerbits;
+      long o = s_transposed[g] ? topponentbits : opponentbits;
+      char d[] = s_digits[g];
+
+      // The squares of the group are in different bit positions within
+      // their bytes, so adding up all the bytes (which the multiplication
+      // does in the highest byte) gathers them without carries:
+
+      index += d[(int) (((p & m) * 0x0101010101010101L) >>> 56)] +
+        2 * d[(int) (((o & m) * 0x0101010101010101L) >>> 56)];
+    }
+
+    return index;
+  }
+
+
+  /**
+   * Divides the squares sq of a placement into groups for GetIndex(),
+   * stores them from index first in mask, transposed and digits, and
+   * returns the number of groups. The square sq[k] is the digit with the
+   * value 3^(n-1-k) of the index, where n is the number of squares.
+   */
+
+  private static int MakeGroups(int sq[], long mask[], boolean transposed[],
+    char digits[][], int first)
+  {
+    // Use the transposed board if that makes fewer groups, which is when
+    // more squares have the same y than the same x:
+
+    int ycount[] = new int[8];
+    int xcount[] = new int[8];
+    int ymax = 0;
+    int xmax = 0;
+
+    for (int k=0; k < sq.length; k++)
+    {
+      ymax = Math.max(ymax, ++ycount[sq[k] & 7]);
+      xmax = Math.max(xmax, ++xcount[sq[k] >> 3]);
+    }
+
+    boolean transpose = xmax < ymax;
+    int groups = Math.min(xmax, ymax);
+    int value[][] = new int[groups][8];
+    int digit = 1;
+
+    for (int g=0; g < groups; g++)
+    {
+      mask[first + g] = 0;
+      transposed[first + g] = transpose;
+    }
+
+    for (int k = sq.length - 1; k >= 0; k--)
+    {
+      int pos = transpose ? ((sq[k] & 7) << 3) | (sq[k] >> 3) : sq[k];
+      int g = 0;
+
+      while ((mask[first + g] & (0x0101010101010101L << (pos & 7))) != 0) g++;
+
+      mask[first + g] |= 1L << pos;
+      value[g][pos & 7] = digit;
+      digit *= 3;
+    }
+
+    for (int g=0; g < groups; g++)
+    {
+      digits[first + g] = new char[256];
+
+      for (int b=0; b < 256; b++)
+      for (int j=0; j < 8; j++)
+        if ((b & (1 << j)) != 0) digits[first + g][b] += value[g][j];
+    }
+
+    return groups;
+  }
+
+
+  private static int GetMobility(long playerbits, long opponentbits)
+  {
+    int mobility =
+      Long.bitCount(Bitboard.GenerateMoves(playerbits, opponentbits)) -
+      Long.bitCount(Bitboard.GenerateMoves(opponentbits, playerbits));
+
+    return Math.max(-MAX_MOBILITY, Math.min(mobility, MAX_MOBILITY)) +
+      MAX_MOBILITY;
+  }
+}
@@ -0,0 +1,219 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.util.Random;
+
+
+/**
+ * The class PatternTrainer collects positions from finished games and fits
+ * the weights of a PatternEvaluator to them. Each position is labelled with
+ * the final result of its game (100 per piece, for the player who made the
+ * last move before the position), and the weights are fitted by stochastic
+ * gradient descent so that the sum of the weights of a position comes as
+ * close as possible to its label.
+ * <P>
+ * A single game says little about the value of a position, but over many
+ * games the weights of the pattern contents that win more pieces grow.
+ * Weights that are never seen are left at 0.
+ */
+
+public class PatternTrainer
+{
+  private long m_player[] = new long[1 << 16];
+  private long m_opponent[] = new long[1 << 16];
+  private int m_result[] = new int[1 << 16];
+  private int m_positions = 0;
+
+
+  /**
+   * Adds the positions of the game g, which must be finished. Returns false
+   * if it is not.
+   */
+
+  public boolean AddGame(Game g)
+  {
+    if (g.GetWhoseTurn() != Score.NOBODY) return false;
+
+    int whitediff = g.GetScore(Score.WHITE) - g.GetScore(Score.BLACK);
+    Game replay = new Game();
+
+    for (int i=1; i <= g.GetMoveNumber(); i++)
+    {
+      Move m = g.GetMove(i);
+      int player = m.GetPlayer();
+
+      if (! replay.MakeMove(m)) return false;
+
+      AddPosition(replay.GetBits(player),
+        replay.GetBits(Score.GetOpponent(player)),
+        player == Score.WHITE ? 100 * whitediff : -100 * whitediff);
+    }
+
+    return true;
+  }
+
+
+  /**
+   * Plays games games between two engines at strength level strength that
+   * evaluate positions with evaluator (or the ordinary evaluation of Engine
+   * if it is null), starting with the random seed seed, and adds their
+   * positions. The first randommoves moves of every game are chosen at
+   * random, so that the positions are varied.
+   */
+
+  public void AddSelfPlayGames(int games, int strength, int seed,
+    int randommoves, PatternEvaluator evaluator)
+  {
+    Engine engine = new Engine(strength, seed);
+    Random random = new Random(seed);
+
+    engine.SetPatternEvaluator(evaluator);
+
+    for (int i=0; i < games; i++)
+    {
+      Game g = new Game();
+
+      while (g.GetWhoseTurn() != Score.NOBODY)
+      {
+        Move m;
+
+        if (g.GetMoveNumber() < randommoves)
+        {
+          int player = g.GetWhoseTurn();
+          long moves = g.GetLegalMoves(player);
+          int n = random.nextInt(Long.bitCount(moves));
+
+          for (int k=0; k < n; k++) moves &= moves - 1;
+
+          int sq = Long.numberOfTrailingZeros(moves);
+
+          m = new Move(Bitboard.SquareX(sq), Bitboard.SquareY(sq), player);
+        }
+        else m = engine.ComputeMove(g);
+
+        if (m == null) break;
+
+        g.MakeMove(m);
+      }
+
+      AddGame(g);
+    }
+  }
+
+
+  /**
+   * Returns the number of positions that have been added.
+   */
+
+  public int GetSize() { return m_positions; }
+
+
+  /**
+   * Fits the weights to the positions, going through all of them epochs
+   * times in an order decided by seed, and returns the evaluator.
+   */
+
+  public PatternEvaluator Train(int epochs, int seed)
+  {
+    int phases = PatternEvaluator.PHASES;
+    int features = PatternEvaluator.FEATURES;
+    float weights[][] = new float[phases][PatternEvaluator.WEIGHTS];
+    int order[] = new int[m_positions];
+    int f[] = new int[features];
+    Random random = new Random(seed);
+
+    for (int i=0; i < m_positions; i++) order[i] = i;
+
+    for (int epoch=0; epoch < epochs; epoch++)
+    {
+      // The step is made smaller towards the end, so that the weights
+      // settle instead of following the last few positions:
+
+      float rate = 0.5f / features / (1 + epoch * 0.25f);
+
+      for (int i = m_positions - 1; i > 0; i--)
+      {
+        int j = random.nextInt(i + 1);
+        int t = order[i];
+
+        order[i] = order[j];
+        order[j] = t;
+      }
+
+      for (int i=0; i < m_positions; i++)
+      {
+        int k = order[i];
+        float w[] =
+          weights[PatternEvaluator.GetPhase(m_player[k], m_opponent[k])];
+
+        PatternEvaluator.GetFeatures(m_player[k], m_opponent[k], f);
+
+        float sum = 0;
+
+        for (int j=0; j < features; j++) sum += w[f[j]];
+
+        float step = (m_result[k] - sum) * rate;
+
+        for (int j=0; j < features; j++) w[f[j]] += step;
+      }
+    }
+
+    PatternEvaluator evaluator = new PatternEvaluator();
+
+    for (int phase=0; phase < phases; phase++)
+    {
+      short w[] = evaluator.GetWeights(phase);
+
+      for (int i=0; i < w.length; i++)
+        w[i] = (short) Math.max(Short.MIN_VALUE,
+          Math.min(Math.round(weights[phase][i]), Short.MAX_VALUE));
+    }
+
+    return evaluator;
+  }
+
+
+  /**
+   * Returns the average absolute difference between what evaluator says
+   * about the positions and their results (100 per piece).
+   */
+
+  public double GetError(PatternEvaluator evaluator)
+  {
+    double sum = 0;
+
+    for (int i=0; i < m_positions; i++)
+      sum += Math.abs(m_result[i] -
+        evaluator.Evaluate(m_player[i], m_opponent[i]));
+
+    return m_positions > 0 ? sum / m_positions : 0;
+  }
+
+
+  private void AddPosition(long playerbits, long opponentbits, int result)
+  {
+    if (m_positions == m_player.length)
+    {
+      int size = 2 * m_positions;
+      long player[] = new long[size];
+      long opponent[] = new long[size];
+      int results[] = new int[size];
+
+      System.arraycopy(m_player, 0, player, 0, m_positions);
+      System.arraycopy(m_opponent, 0, opponent, 0, m_positions);
+      System.arraycopy(m_result, 0, results, 0, m_positions);
+
+      m_player = player;
+      m_opponent = opponent;
+      m_result = results;
+    }
+
+    m_player[m_positions] = playerbits;
+    m_opponent[m_positions] = opponentbits;
+    m_result[m_positions] = result;
+    m_positions++;
+  }
+}
@@ -0,0 +1,313 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * The class PositionCache remembers the moves and analyses that have been
+ * computed for positions, so that they do not have to be computed again
+ * when a position comes back, in the same game or in another one. Many
+ * games pass through the same openings, and through positions that are
+ * mirror images or rotations of each other. All eight of those are
+ * computed once: the results are stored for the canonical form of the
+ * position (see Bitboard.CanonicalSymmetry()) and turned back to the
+ * position that is looked up.
+ * <P>
+ * A result is stored together with the strength level it was computed at,
+ * and is only found at the same level. The results must also have been
+ * computed with the same settings otherwise (evaluation, selective search),
+ * so a cache should only be shared by engines that are set up the same way,
+ * and cleared when the settings are changed. Moves that were computed with
+ * a time limit should not be stored, since they depend on how fast the
+ * search was.
+ * <P>
+ * The cache holds at most a fixed number of results. When it is full the
+ * one that was used longest ago is dropped. All functions may be called
+ * from any thread.
+ * <P>
+ * Note that a move that is taken from the cache is always the same, while
+ * an engine picks one of several equally good moves at random.
+ */
+
+public class PositionCache
+{
+  private static final int KIND_MOVE = 1;
+  private static final int KIND_ANALYSIS = 2;
+
+  /**
+   * The default number of results.
+   */
+
+  public static final int DEFAULT_CAPACITY = 1 << 16;
+
+  /**
+   * A result, with the squares as they are in the canonical form of the
+   * position. The canonical position and the kind of result are stored
+   * too, so that a result is never returned for another position whose
+   * key happens to be the same.
+   */
+
+  private static class Entry
+  {
+    long m_playerbits;
+    long m_opponentbits;
+    int m_id;
+    int m_square;
+    AnalyzedMove m_moves[];
+  }
+
+  private final int m_capacity;
+  private final LinkedHashMap<Long, Entry> m_entries;
+  private long m_hits;
+  private long m_misses;
+
+
+  /**
+   * Creates a cache that holds DEFAULT_CAPACITY results.
+   */
+
+  public PositionCache()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+
+  /**
+   * Creates a cache that holds capacity results.
+   */
+
+  public PositionCache(int capacity)
+  {
+    m_capacity = Math.max(capacity, 1);
+
+    // A map in the order the entries were used, that drops the eldest when
+    // it grows too large:
+
+    m_entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true)
+    {
+      protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest)
+      {
+        return size() > m_capacity;
+      }
+    };
+  }
+
+
+  /**
+   * Returns the move that was stored for the current position of g at the
+   * strength level level, or null if there is none.
+   */
+
+  public synchronized Move GetMove(Game g, int level)
+  {
+    int player = g.GetWhoseTurn();
+    long playerbits = g.GetBits(player);
+    long opponentbits = g.GetBits(Score.GetOpponent(player));
+    int s = Bitboard.CanonicalSymmetry(playerbits, opponentbits);
+    Entry e = Lookup(Bitboard.Transform(playerbits, s),
+      Bitboard.Transform(opponentbits, s), GetId(player, KIND_MOVE, level));
+
+    if (e == null) return null;
+
+    int sq = Bitboard.InverseTransformSquare(e.m_square, s);
+
+    return new Move(Bitboard.SquareX(sq), Bitboard.SquareY(sq), player);
+  }
+
+
+  /**
+   * Stores move as the move computed for the current position of g at the
+   * strength level level.
+   */
+
+  public synchronized void PutMove(Game g, int level, Move move)
+  {
+    int player = g.GetWhoseTurn();
+    long playerbits = g.GetBits(player);
+    long opponentbits = g.GetBits(Score.GetOpponent(player));
+    int s = Bitboard.CanonicalSymmetry(playerbits, opponentbits);
+    Entry e = new Entry();
+
+    e.m_playerbits = Bitboard.Transform(playerbits, s);
+    e.m_opponentbits = Bitboard.Transform(opponentbits, s);
+    e.m_id = GetId(player, KIND_MOVE, level);
+    e.m_square = Bitboard.TransformSquare(
+      Bitboard.Square(move.GetX(), move.GetY()), s);
+
+    m_entries.put(Long.valueOf(
+      GetKey(e.m_playerbits, e.m_opponentbits, e.m_id)), e);
+  }
+
+
+  /**
+   * Returns the analysis (see Engine.AnalyzeMoves()) that was stored for
+   * the current position of g at the strength level level, or null if there
+   * is none. The analysis is a copy that the caller may change.
+   */
+
+  public synchronized AnalyzedMove[] GetAnalysis(Game g, int level)
+  {
+    int player = g.GetWhoseTurn();
+    long playerbits = g.GetBits(player);
+    long opponentbits = g.GetBits(Score.GetOpponent(player));
+    int s = Bitboard.CanonicalSymmetry(playerbits, opponentbits);
+    Entry e = Lookup(Bitboard.Transform(playerbits, s),
+      Bitboard.Transform(opponentbits, s),
+      GetId(player, KIND_ANALYSIS, level));
+
+    if (e == null) return null;
+
+    return Transform(e.m_moves, s, true);
+  }
+
+
+  /**
+   * Stores moves as the analysis of the current position of g at the
+   * strength level level. A copy is stored, so moves may be changed
+   * afterwards.
+   */
+
+  public synchronized void PutAnalysis(Game g, int level,
+    AnalyzedMove moves[])
+  {
+    int player = g.GetWhoseTurn();
+    long playerbits = g.GetBits(player);
+    long opponentbits = g.GetBits(Score.GetOpponent(player));
+    int s = Bitboard.CanonicalSymmetry(playerbits, opponentbits);
+    Entry e = new Entry();
+
+    e.m_playerbits = Bitboard.Transform(playerbits, s);
+    e.m_opponentbits = Bitboard.Transform(opponentbits, s);
+    e.m_id = GetId(player, KIND_ANALYSIS, level);
+    e.m_moves = Transform(moves, s, false);
+
+    m_entries.put(Long.valueOf(
+      GetKey(e.m_playerbits, e.m_opponentbits, e.m_id)), e);
+  }
+
+
+  /**
+   * Returns the number of results in the cache.
+   */
+
+  public synchronized int GetSize() { return m_entries.size(); }
+
+
+  /**
+   * Returns the largest number of results the cache holds.
+   */
+
+  public int GetCapacity() { return m_capacity; }
+
+
+  /**
+   * Returns the number of times a result was found.
+   */
+
+  public synchronized long GetHits() { return m_hits; }
+
+
+  /**
+   * Returns the number of times a result was looked for but not found.
+   */
+
+  public synchronized long GetMisses() { return m_misses; }
+
+
+  public synchronized void Clear()
+  {
+    m_entries.clear();
+    m_hits = 0;
+    m_misses = 0;
+  }
+
+
+  /**
+   * Returns the entry for the canonical position where the owner of
+   * playerbits is to move, with the result identified by id (see GetId()),
+   * or null if there is none.
+   */
+
+  private Entry Lookup(long playerbits, long opponentbits, int id)
+  {
+    Entry e = m_entries.get(Long.valueOf(
+      GetKey(playerbits, opponentbits, id)));
+
+    if (e != null && (e.m_playerbits != playerbits ||
+        e.m_opponentbits != opponentbits || e.m_id != id))
+      e = null;
+
+    if (e != null) m_hits++;
+    else m_misses++;
+
+    return e;
+  }
+
+
+  /**
+   * Returns a number that tells results apart when they are for the same
+   * position: who is to move, the kind of result and the level.
+   */
+
+  private static int GetId(int player, int kind, int level)
+  {
+    return level << 8 | kind << 2 | player;
+  }
+
+
+  /**
+   * Returns the key of the result identified by id for the canonical
+   * position where the owner of playerbits is to move.
+   */
+
+  private static long GetKey(long playerbits, long opponentbits, int id)
+  {
+    return Bitboard.Key(playerbits, opponentbits) ^
+      (id * 0x9e3779b97f4a7c15L);
+  }
+
+
+  /**
+   * Returns a copy of moves with the moves (and principal variations)
+   * transformed by the symmetry s, or back again if inverse is set (s may
+   * be 0, to copy the moves).
+   */
+
+  private static AnalyzedMove[] Transform(AnalyzedMove moves[], int s,
+    boolean inverse)
+  {
+    AnalyzedMove result[] = new AnalyzedMove[moves.length];
+
+    for (int i=0; i < moves.length; i++)
+    {
+      Move pv[] = moves[i].GetPrincipalVariation();
+      Move transformed[] = new Move[pv.length];
+
+      for (int j=0; j < pv.length; j++)
+        transformed[j] = Transform(pv[j], s, inverse);
+
+      result[i] = new AnalyzedMove(Transform(moves[i].GetMove(), s, inverse),
+        moves[i].GetValue(), moves[i].GetDepth(), moves[i].GetFinal(),
+        transformed);
+    }
+
+    return result;
+  }
+
+
+  private static Move Transform(Move m, int s, boolean inverse)
+  {
+    int sq = Bitboard.Square(m.GetX(), m.GetY());
+
+    sq = inverse ? Bitboard.InverseTransformSquare(sq, s) :
+      Bitboard.TransformSquare(sq, s);
+
+    return new Move(Bitboard.SquareX(sq), Bitboard.SquareY(sq),
+      m.GetPlayer());
+  }
+}
@@ -0,0 +1,299 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * The class ProbCut holds the parameters that make the search of Engine
+ * selective (see Engine.SetProbCut()). The value of a deep search can be
+ * predicted quite well from the value of a shallow search of the same
+ * position: deep = slope * shallow + offset, with an error that has the
+ * standard deviation sigma. When the shallow search says that the deep
+ * search would be outside the window with a margin of threshold * sigma,
+ * the deep search is not done (this is called ProbCut, and with separate
+ * parameters for each depth and phase of the game, multi-ProbCut).
+ * <P>
+ * The parameters are fitted to searches of real positions by the
+ * CalibrateProbCut program in the Tools directory, for each depth from
+ * MIN_DEPTH and each of PHASES phases, decided by the number of pieces on
+ * the board. Deeper searches than the parameters go to use the parameters
+ * of the deepest. The shallow search for a depth is given by
+ * GetShallowDepth().
+ * <P>
+ * The parameters are stored in a compact binary format:
+ * <PRE>
+ *   int   MAGIC
+ *   int   number of phases
+ *   int   number of depths (the deepest depth + 1)
+ *   float slope, offset, sigma[number of phases][number of depths]
+ * </PRE>
+ * All numbers are big endian. Depths below MIN_DEPTH and depths for which
+ * there was nothing to calibrate with have sigma 0, which means that they
+ * are never cut.
+ * <P>
+ * The threshold is not stored; it decides how selective the search is.
+ * A smaller threshold cuts more and makes more mistakes.
+ */
+
+public class ProbCut
+{
+  static final int MAGIC = 0x4d504331; // "MPC1"
+  static final int PHASES = 6;
+
+  /**
+   * The shallowest search that may be cut (shallower searches are too
+   * cheap to gain anything).
+   */
+
+  static final int MIN_DEPTH = 3;
+
+  /**
+   * The default threshold, in standard deviations.
+   */
+
+  public static final double DEFAULT_THRESHOLD = 1.5;
+
+  private float m_slope[][];
+  private float m_offset[][];
+  private float m_sigma[][];
+  private double m_threshold = DEFAULT_THRESHOLD;
+
+  /**
+   * The number that identifies the parameters and the threshold (see
+   * GetId()), and the next free one.
+   */
+
+  private static final AtomicLong s_next_id = new AtomicLong(1);
+
+  private volatile long m_id = s_next_id.getAndIncrement();
+
+
+  /**
+   * Creates parameters for depths up to maxdepth where nothing is cut (see
+   * CalibrateProbCut).
+   */
+
+  ProbCut(int maxdepth)
+  {
+    m_slope = new float[PHASES][maxdepth + 1];
+    m_offset = new float[PHASES][maxdepth + 1];
+    m_sigma = new float[PHASES][maxdepth + 1];
+  }
+
+
+  /**
+   * Creates parameters from buffer, which holds them in the binary format
+   * from its current position.
+   */
+
+  public ProbCut(ByteBuffer buffer) throws IOException
+  {
+    ByteBuffer b = buffer.slice();
+
+    if (b.capacity() < 12 || b.getInt(0) != MAGIC)
+      throw new IOException("Not ProbCut parameters");
+
+    int depths = b.getInt(8);
+
+    if (b.getInt(4) != PHASES || depths < 1 || depths > 64)
+      throw new IOException("ProbCut parameters are for other phases");
+
+    if (b.capacity() < 12 + 12L * PHASES * depths)
+      throw new IOException("ProbCut parameters are truncated");
+
+    m_slope = new float[PHASES][depths];
+    m_offset = new float[PHASES][depths];
+    m_sigma = new float[PHASES][depths];
+    b.position(12);
+
+    for (int phase=0; phase < PHASES; phase++)
+    for (int depth=0; depth < depths; depth++)
+    {
+      m_slope[phase][depth] = b.getFloat();
+      m_offset[phase][depth] = b.getFloat();
+      m_sigma[phase][depth] = b.getFloat();
+    }
+  }
+
+
+  /**
+   * Reads parameters in the binary format from in.
+   */
+
+  public static ProbCut Read(InputStream in) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte buf[] = new byte[8192];
+    int n;
+
+    while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+
+    return new ProbCut(ByteBuffer.wrap(out.toByteArray()));
+  }
+
+
+  /**
+   * Writes the parameters to out in the binary format.
+   */
+
+  public void Write(OutputStream out) throws IOException
+  {
+    DataOutputStream data = new DataOutputStream(out);
+    int depths = m_sigma[0].length;
+
+    data.writeInt(MAGIC);
+    data.writeInt(PHASES);
+    data.writeInt(depths);
+
+    for (int phase=0; phase < PHASES; phase++)
+    for (int depth=0; depth < depths; depth++)
+    {
+      data.writeFloat(m_slope[phase][depth]);
+      data.writeFloat(m_offset[phase][depth]);
+      data.writeFloat(m_sigma[phase][depth]);
+    }
+
+    data.flush();
+  }
+
+
+  /**
+   * Sets how many standard deviations outside the window the predicted
+   * value must be for a search to be cut (the default is
+   * DEFAULT_THRESHOLD).
+   */
+
+  public void SetThreshold(double threshold)
+  {
+    m_threshold = threshold;
+    m_id = s_next_id.getAndIncrement();
+  }
+
+
+  /**
+   * Gets the threshold.
+   */
+
+  public double GetThreshold() { return m_threshold; }
+
+
+  /**
+   * Returns the depth of the shallow search that predicts a search to the
+   * depth depth: about half as deep, and an even number of moves shallower,
+   * since the evaluation tends to favour the player who made the last move.
+   */
+
+  static int GetShallowDepth(int depth)
+  {
+    int shallow = depth / 2;
+
+    if (((depth - shallow) & 1) != 0) shallow--;
+
+    return Math.max(shallow, 1);
+  }
+
+
+  static int GetPhase(int pieces)
+  {
+    return Math.max(0, Math.min((pieces - 4) * PHASES / 60, PHASES - 1));
+  }
+
+
+  /**
+   * Returns true if a search to the depth depth, from a position with
+   * pieces pieces, may be cut.
+   */
+
+  final boolean CanCut(int pieces, int depth)
+  {
+    float sigma[] = m_sigma[GetPhase(pieces)];
+
+    return depth >= MIN_DEPTH && sigma[Math.min(depth, sigma.length - 1)] > 0;
+  }
+
+
+  /**
+   * Returns the value that the shallow search must reach for a search to
+   * the depth depth to be predicted to reach beta (or more), from a
+   * position with pieces pieces.
+   */
+
+  final int GetHighBound(int pieces, int depth, int beta)
+  {
+    int phase = GetPhase(pieces);
+    int d = Math.min(depth, m_sigma[phase].length - 1);
+
+    return (int) Math.ceil((beta + m_threshold * m_sigma[phase][d] -
+      m_offset[phase][d]) / m_slope[phase][d]);
+  }
+
+
+  /**
+   * Returns the value that the shallow search must not exceed for a search
+   * to the depth depth to be predicted not to exceed alpha.
+   */
+
+  final int GetLowBound(int pieces, int depth, int alpha)
+  {
+    int phase = GetPhase(pieces);
+    int d = Math.min(depth, m_sigma[phase].length - 1);
+
+    return (int) Math.floor((alpha - m_threshold * m_sigma[phase][d] -
+      m_offset[phase][d]) / m_slope[phase][d]);
+  }
+
+
+  /**
+   * Sets the parameters for phase and depth (see CalibrateProbCut).
+   */
+
+  void SetParameters(int phase, int depth, float slope, float offset,
+    float sigma)
+  {
+    m_slope[phase][depth] = slope;
+    m_offset[phase][depth] = offset;
+    m_sigma[phase][depth] = sigma;
+    m_id = s_next_id.getAndIncrement();
+  }
+
+
+  /**
+   * Returns the deepest depth that has parameters of its own.
+   */
+
+  int GetMaxDepth() { return m_sigma[0].length - 1; }
+
+
+  /**
+   * Returns a number that is different for every ProbCut, and that changes
+   * when the parameters or the threshold are changed (see
+   * Engine.SetEvaluationContext()).
+   */
+
+  long GetId() { return m_id; }
+
+
+  public String toString()
+  {
+    String s = "";
+
+    for (int phase=0; phase < PHASES; phase++)
+    for (int depth = MIN_DEPTH; depth < m_sigma[phase].length; depth++)
+      if (m_sigma[phase][depth] > 0)
+        s += "phase " + phase + " depth " + GetShallowDepth(depth) + "/" +
+          depth + ": slope " + m_slope[phase][depth] + " offset " +
+          m_offset[phase][depth] + " sigma " + m_sigma[phase][depth] + "\n";
+
+    return s;
+  }
+}
@@ -0,0 +1,17 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+
+/**
+ * Called when an engine has finished a call to ComputeMove() (see
+ * SuperEngine.SetSearchListener()). It is called on the thread that called
+ * ComputeMove().
+ */
+
+public interface SearchListener
+{
+  public void SearchCompleted(SuperEngine engine, SearchStats stats);
+}
@@ -0,0 +1,184 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+
+/**
+ * The class SearchMetrics is a SearchListener that adds up the statistics
+ * of all searches it is told about, so that it can be read how fast the
+ * engines are and how long it takes them to produce moves. The same
+ * SearchMetrics can be given to several engines, also engines that search
+ * on different threads.
+ * <P>
+ * The time of each search is counted in a histogram where bucket i holds
+ * the searches that took less than 2^i milliseconds (and at least
+ * 2^(i-1)), the last bucket holding all longer searches.
+ */
+
+public class SearchMetrics implements SearchListener
+{
+  public static final int LATENCY_BUCKETS = 20;
+
+  private long m_searches;
+  private long m_nodes;
+  private long m_time;
+  private long m_tt_probes;
+  private long m_tt_hits;
+  private long m_book_moves;
+  private long m_interrupts;
+  private long m_timeouts;
+  private long m_max_time;
+  private long m_latency[] = new long[LATENCY_BUCKETS];
+
+
+  public synchronized void SearchCompleted(SuperEngine engine,
+    SearchStats stats)
+  {
+    m_searches++;
+    m_nodes += stats.GetNodes();
+    m_time += stats.GetTime();
+    m_tt_probes += stats.GetTranspositionTableProbes();
+    m_tt_hits += stats.GetTranspositionTableHits();
+
+    if (stats.GetBook()) m_book_moves++;
+    if (stats.GetInterrupted()) m_interrupts++;
+    if (stats.GetTimedOut()) m_timeouts++;
+
+    m_max_time = Math.max(m_max_time, stats.GetTime());
+    m_latency[LatencyBucket(stats.GetTime())]++;
+  }
+
+
+  /**
+   * Sets all counters to zero.
+   */
+
+  public synchronized void Reset()
+  {
+    m_searches = 0;
+    m_nodes = 0;
+    m_time = 0;
+    m_tt_probes = 0;
+    m_tt_hits = 0;
+    m_book_moves = 0;
+    m_interrupts = 0;
+    m_timeouts = 0;
+    m_max_time = 0;
+    m_latency = new long[LATENCY_BUCKETS];
+  }
+
+
+  /**
+   * Returns the number of searches (calls to ComputeMove()).
+   */
+
+  public synchronized long GetSearches() { return m_searches; }
+
+
+  /**
+   * Returns the total number of positions searched.
+   */
+
+  public synchronized long GetNodes() { return m_nodes; }
+
+
+  /**
+   * Returns the total time of all searches in nanoseconds.
+   */
+
+  public synchronized long GetTime() { return m_time; }
+
+
+  /**
+   * Returns the time of the slowest search in nanoseconds.
+   */
+
+  public synchronized long GetMaxTime() { return m_max_time; }
+
+
+  /**
+   * Returns the number of positions searched per second over all searches.
+   */
+
+  public synchronized double GetNodesPerSecond()
+  {
+    return m_time > 0 ? m_nodes * 1e9 / m_time : 0;
+  }
+
+
+  /**
+   * Returns the part (0 to 1) of the transposition table lookups that found
+   * the position.
+   */
+
+  public synchronized double GetTranspositionTableHitRate()
+  {
+    return m_tt_probes > 0 ? (double) m_tt_hits / m_tt_probes : 0;
+  }
+
+
+  /**
+   * Returns the number of moves that were played without being searched.
+   */
+
+  public synchronized long GetBookMoves() { return m_book_moves; }
+
+
+  /**
+   * Returns the number of searches that were interrupted.
+   */
+
+  public synchronized long GetInterrupts() { return m_interrupts; }
+
+
+  /**
+   * Returns the number of searches where the time ran out.
+   */
+
+  public synchronized long GetTimeouts() { return m_timeouts; }
+
+
+  /**
+   * Returns a copy of the latency histogram (see the class description).
+   */
+
+  public synchronized long[] GetLatencyHistogram()
+  {
+    return m_latency.clone();
+  }
+
+
+  /**
+   * Returns an upper limit in milliseconds for the time within which the
+   * part p (0 to 1) of the searches were completed, for instance
+   * GetLatencyPercentile(0.99) for the 99th percentile. Returns -1 if the
+   * limit is longer than the histogram covers.
+   */
+
+  public synchronized long GetLatencyPercentile(double p)
+  {
+    if (m_searches == 0) return 0;
+
+    long count = 0;
+
+    for (int i=0; i < LATENCY_BUCKETS - 1; i++)
+    {
+      count += m_latency[i];
+
+      if (count >= p * m_searches) return 1L << i;
+    }
+
+    return -1;
+  }
+
+
+  private static int LatencyBucket(long time)
+  {
+    long ms = time / 1000000;
+    int bucket = 64 - Long.numberOfLeadingZeros(ms);
+
+    return Math.min(bucket, LATENCY_BUCKETS - 1);
+  }
+}
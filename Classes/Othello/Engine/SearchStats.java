@@ -0,0 +1,159 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+
+/**
+ * The class SearchStats tells how a move was computed: how deep the search
+ * went, how many positions were searched, how long it took and how well the
+ * search was pruned. An engine creates one for every call to ComputeMove()
+ * (see SuperEngine.GetLastSearchStats() and SearchListener).
+ */
+
+public class SearchStats
+{
+  private Move m_move;
+  private int m_depth;
+  private long m_nodes;
+  private long m_cutoffs;
+  private long m_tt_probes;
+  private long m_tt_hits;
+  private long m_time;
+  private boolean m_book;
+  private boolean m_interrupted;
+  private boolean m_timed_out;
+
+
+  /**
+   * Creates the statistics for a search that produced move (null if the
+   * search was interrupted) after searching nodes positions to the depth
+   * depth in time nanoseconds. book is true when the move was not searched
+   * at all (it came from an opening book, or it was the first move of the
+   * game), interrupted is true when SetInterrupt() was called and timed_out
+   * is true when the time ran out before the search was completed.
+   */
+
+  public SearchStats(Move move, int depth, long nodes, long cutoffs,
+    long tt_probes, long tt_hits, long time, boolean book,
+    boolean interrupted, boolean timed_out)
+  {
+    m_move = move;
+    m_depth = depth;
+    m_nodes = nodes;
+    m_cutoffs = cutoffs;
+    m_tt_probes = tt_probes;
+    m_tt_hits = tt_hits;
+    m_time = time;
+    m_book = book;
+    m_interrupted = interrupted;
+    m_timed_out = timed_out;
+  }
+
+
+  /**
+   * Returns the move that was computed (null if the search was interrupted).
+   */
+
+  public Move GetMove() { return m_move; }
+
+
+  /**
+   * Returns the depth (in moves) of the deepest search that was completed.
+   */
+
+  public int GetDepth() { return m_depth; }
+
+
+  /**
+   * Returns the number of positions that were searched.
+   */
+
+  public long GetNodes() { return m_nodes; }
+
+
+  /**
+   * Returns the number of positions where the search was cut off before all
+   * moves had been searched (not counting the endgame solver, but counting
+   * the positions that were not searched deeper because of ProbCut).
+   */
+
+  public long GetCutoffs() { return m_cutoffs; }
+
+
+  /**
+   * Returns the number of times the transposition table was looked in.
+   */
+
+  public long GetTranspositionTableProbes() { return m_tt_probes; }
+
+
+  /**
+   * Returns the number of times the position was found in the
+   * transposition table.
+   */
+
+  public long GetTranspositionTableHits() { return m_tt_hits; }
+
+
+  /**
+   * Returns the time the search took in nanoseconds.
+   */
+
+  public long GetTime() { return m_time; }
+
+
+  /**
+   * Returns true when the move was not searched (see SearchStats()).
+   */
+
+  public boolean GetBook() { return m_book; }
+
+
+  /**
+   * Returns true when the search was interrupted by SetInterrupt().
+   */
+
+  public boolean GetInterrupted() { return m_interrupted; }
+
+
+  /**
+   * Returns true when the time ran out, so that the move is from a search
+   * that was not as deep as the engine tried to go.
+   */
+
+  public boolean GetTimedOut() { return m_timed_out; }
+
+
+  /**
+   * Returns the number of positions searched per second.
+   */
+
+  public double GetNodesPerSecond()
+  {
+    return m_time > 0 ? m_nodes * 1e9 / m_time : 0;
+  }
+
+
+  /**
+   * Returns the effective branching factor, the number of moves per
+   * position that would give as many positions in a tree without pruning
+   * as the search actually visited.
+   */
+
+  public double GetBranchingFactor()
+  {
+    return m_depth > 0 && m_nodes > 0 ?
+      Math.pow(m_nodes, 1.0 / m_depth) : 0;
+  }
+
+
+  public String toString()
+  {
+    return "depth " + m_depth + " nodes " + m_nodes + " time " +
+      m_time / 1000000 + " ms" + (m_book ? " book" : "") +
+      (m_interrupted ? " interrupted" : "") +
+      (m_timed_out ? " timed out" : "");
+  }
+}
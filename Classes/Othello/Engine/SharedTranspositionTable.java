@@ -0,0 +1,64 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+
+/**
+ * The class SharedTranspositionTable is a transposition table (see class
+ * TranspositionTable) that is kept outside the Java heap and can be shared
+ * by any number of engines (see Engine.SetSharedTranspositionTable()), so
+ * that engines that search the same or similar positions at the same time,
+ * or one after the other, use each other's results.
+ * <P>
+ * Since the entries are not Java objects or arrays, a table of many
+ * gigabytes costs the garbage collector nothing. The engines read and write
+ * the table without locking (see TranspositionTable), and results from
+ * engines that evaluate positions in different ways are kept apart.
+ */
+
+public class SharedTranspositionTable
+{
+  private TranspositionTable m_table;
+
+
+  /**
+   * Creates a table that uses at most bytes bytes of memory outside the
+   * heap (which must be allowed by -XX:MaxDirectMemorySize if it is large).
+   */
+
+  public SharedTranspositionTable(long bytes)
+  {
+    m_table = new TranspositionTable(bytes, true);
+  }
+
+
+  /**
+   * Returns the number of bytes the table uses.
+   */
+
+  public long GetSize() { return m_table.GetBytes(); }
+
+
+  /**
+   * Makes the entries that are in the table the first to be replaced when
+   * new results are stored. The engines that use the table do not do this
+   * when they start a search (as they do with tables of their own), since
+   * the entries are still useful to the others. It should be called when
+   * the positions that are searched have moved on, for instance when a new
+   * batch of positions is analyzed.
+   */
+
+  public void NewSearch() { m_table.NewSearch(); }
+
+
+  /**
+   * Removes all entries. Should not be called while an engine is searching.
+   */
+
+  public void Clear() { m_table.Clear(); }
+
+
+  TranspositionTable GetTable() { return m_table; }
+}
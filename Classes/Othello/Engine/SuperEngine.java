@@ -1,139 +1,242 @@
-
-// This code is freely distributable, but may neither be sold nor used or
-// included in any product sold for profit without permission from
-// Mats Luthman.
-
-package Othello.Engine;
-
-import java.util.Random;
-
-
-/**
- * The class SuperEngine is a super class for engines that produce moves.
- * It implements functionality that move engines have in common, which is
- * useful if you want to use several different engines in the same program
- * (for instance when you are test playing different strategies against each
- * other).
- * <P>
- * SuperEngine implements:
- * <P>
- * Random number handling (engines should not play exactly the same games
- * repeatedly).
- * <P>
- * Setting playing strength level.
- * <P>
- * Functionality for telling the engine to interrupt calculation.
- */
-
-public abstract class SuperEngine
-{
-  /**
-   * The programs current strenght level.
-   * Is set and read by SetStrength() and GetStrength().
-   */
-
-  protected int m_strength;
-
-
-  /**
-   * Could (and should in a good engine) be used to prevent the engine from
-   * repeating itself, always playing the same moves in the same positions.
-   * If this is not done, winning once would make it possible to play the
-   * same moves and win every time against the program.
-   */
-
-  private Random m_random;
-
-
-  /**
-   *  Is set and read by SetInterrupt() and GetInterrupt().
-   */
-
-  private boolean m_interrupt;
-
-
-  /**
-   * Creates an engine playing at level st. All integers greater than 0
-   * should be possible levels. There need not be any actual difference in
-   * playing strength between levels, but if there is, higher number should
-   * mean greater playing strength.
-   */
-
-  public SuperEngine(int st)
-  {
-    m_strength = st;
-    m_random = new Random();
-    m_interrupt = false;
-  }
-
-
-  /**
-   * The same as SuperEngine(int st), but uses sd as the seed for the random
-   * generator. This means that the engine always behaves in exactly the same
-   * way (practical when testing).
-   */
-
-  public SuperEngine(int st, int sd)
-  {
-    m_strength = st;
-    m_random = new Random(sd);
-    m_interrupt = false;
-  }
-
-
-  /**
-   * Tells the engine to interrupt calculation as
-   * soon as possible and return null from ComputeMove(). This function could
-   * be called when ComputeMove() is executing. 
-   */
-
-  public synchronized final void SetInterrupt(boolean intr)
-  {
-    m_interrupt =intr;
-  }
-
-
-  /**
-   * Returns true when SetInterrupt() has been called. Should be called
-   * with short intervals from ComputeMove().
-   */
-
-  public synchronized final boolean GetInterrupt() { return m_interrupt; }
-
-
-  /**
-   * Sets playing strength level.
-   */
-
-  public void SetStrength(int st) { m_strength = st; }
-
-
-  /**
-   *  public int GetStrength()
-   *     Gets playing strength level.
-   */
-
-  public int GetStrength() { return m_strength; }
-
-
-  /**
-   * Changes the random seed.
-   */
-
-  public void SetSeed(int sd) { m_random = new Random(sd); }
-
-
-  /**
-   * Creates a random number.
-   */
-
-  protected int GetRandom() { return m_random.nextInt(); }
-
-
-  /**
-   * This function should produce a move. If SetInterrupt() is called
-   * during its execution it should return null as soon as possible.
-   */
-
-  public abstract Move ComputeMove(Game g);
-}
+
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.util.Random;
+
+
+/**
+ * The class SuperEngine is a super class for engines that produce moves.
+ * It implements functionality that move engines have in common, which is
+ * useful if you want to use several different engines in the same program
+ * (for instance when you are test playing different strategies against each
+ * other, as the Tournament program in the Tools directory does).
+ * <P>
+ * SuperEngine implements:
+ * <P>
+ * Random number handling (engines should not play exactly the same games
+ * repeatedly).
+ * <P>
+ * Setting playing strength level.
+ * <P>
+ * Functionality for telling the engine to interrupt calculation, either at
+ * once or when the current search depth is completed.
+ * <P>
+ * The flags that stop a computation (see SetInterrupt() and SetSoftStop())
+ * are cleared when ComputeMove() returns, not when it starts, so that a
+ * stop that is given just before the computation starts (while it waits
+ * for a thread, for instance) is not lost. This means that a stop that is
+ * given between two computations stops the next one at once. Code that
+ * stops an engine and later uses it for another move must clear the flags
+ * first (with SetInterrupt(false) and SetSoftStop(false), as
+ * EnginePool.Acquire() does).
+ * <P>
+ * Statistics on the searches (see SearchStats and SearchListener).
+ */
+
+public abstract class SuperEngine
+{
+  /**
+   * The programs current strenght level.
+   * Is set and read by SetStrength() and GetStrength().
+   */
+
+  protected int m_strength;
+
+
+  /**
+   * Could (and should in a good engine) be used to prevent the engine from
+   * repeating itself, always playing the same moves in the same positions.
+   * If this is not done, winning once would make it possible to play the
+   * same moves and win every time against the program.
+   */
+
+  private Random m_random;
+
+
+  /**
+   *  Is set and read by SetInterrupt() and GetInterrupt(), and
+   *  SetSoftStop() and GetSoftStop(). They are read without locking by
+   *  the thread that computes the move, so they are volatile.
+   */
+
+  private volatile boolean m_interrupt;
+  private volatile boolean m_soft_stop;
+
+
+  /**
+   * The statistics of the last search and the listener that is told about
+   * every search (see SearchCompleted()). m_last_stats is written by the
+   * thread that computes the move and may be read by any thread.
+   */
+
+  private volatile SearchStats m_last_stats;
+  private SearchListener m_listener;
+
+
+  /**
+   * Creates an engine playing at level st. All integers greater than 0
+   * should be possible levels. There need not be any actual difference in
+   * playing strength between levels, but if there is, higher number should
+   * mean greater playing strength.
+   */
+
+  public SuperEngine(int st)
+  {
+    m_strength = st;
+    m_random = new Random();
+    m_interrupt = false;
+    m_soft_stop = false;
+  }
+
+
+  /**
+   * The same as SuperEngine(int st), but uses sd as the seed for the random
+   * generator. This means that the engine always behaves in exactly the same
+   * way (practical when testing).
+   */
+
+  public SuperEngine(int st, int sd)
+  {
+    m_strength = st;
+    m_random = new Random(sd);
+    m_interrupt = false;
+    m_soft_stop = false;
+  }
+
+
+  /**
+   * Tells the engine to interrupt calculation as
+   * soon as possible and return null from ComputeMove(). This function could
+   * be called when ComputeMove() is executing. If it is called before
+   * ComputeMove(), the next call to ComputeMove() is interrupted. The flag
+   * is cleared when ComputeMove() returns.
+   */
+
+  public final void SetInterrupt(boolean intr)
+  {
+    m_interrupt =intr;
+  }
+
+
+  /**
+   * Returns true when SetInterrupt() has been called. Should be called
+   * with short intervals from ComputeMove() (reading it is cheap, but not as
+   * cheap as a field that is not volatile, so an engine may want to read it
+   * only every few hundred positions).
+   */
+
+  public final boolean GetInterrupt() { return m_interrupt; }
+
+
+  /**
+   * Tells the engine to finish the search depth it is working on and then
+   * return the best move found so far from ComputeMove(), instead of going
+   * deeper. This only makes a difference for engines that deepen their
+   * search one level at a time (as ComputeMove(Game, long) does). The flag
+   * is cleared when ComputeMove() returns.
+   */
+
+  public final void SetSoftStop(boolean stop)
+  {
+    m_soft_stop = stop;
+  }
+
+
+  /**
+   * Returns true when SetSoftStop() has been called.
+   */
+
+  public final boolean GetSoftStop() { return m_soft_stop; }
+
+
+  /**
+   * Sets playing strength level.
+   */
+
+  public void SetStrength(int st) { m_strength = st; }
+
+
+  /**
+   *  public int GetStrength()
+   *     Gets playing strength level.
+   */
+
+  public int GetStrength() { return m_strength; }
+
+
+  /**
+   * Changes the random seed.
+   */
+
+  public void SetSeed(int sd) { m_random = new Random(sd); }
+
+
+  /**
+   * Creates a random number.
+   */
+
+  protected int GetRandom() { return m_random.nextInt(); }
+
+
+  /**
+   * This function should produce a move. If SetInterrupt() is called
+   * during its execution (or before it, see the class comment) it should
+   * return null as soon as possible. It should clear the flags set by
+   * SetInterrupt() and SetSoftStop() before it returns.
+   */
+
+  public abstract Move ComputeMove(Game g);
+
+
+  /**
+   * This function should produce a move before the time deadline (a value of
+   * System.nanoTime()), returning the best move it has found so far when the
+   * time is up rather than null. Engines that cannot control their time
+   * simply call ComputeMove(g).
+   */
+
+  public Move ComputeMove(Game g, long deadline) { return ComputeMove(g); }
+
+
+  /**
+   * Returns the statistics of the last call to ComputeMove(), or null if
+   * the engine does not produce statistics (or has not computed a move yet).
+   */
+
+  public SearchStats GetLastSearchStats() { return m_last_stats; }
+
+
+  /**
+   * Sets the listener that is called every time a call to ComputeMove() is
+   * finished (null for no listener).
+   */
+
+  public void SetSearchListener(SearchListener l) { m_listener = l; }
+
+
+  /**
+   * Returns the listener set by SetSearchListener().
+   */
+
+  public SearchListener GetSearchListener() { return m_listener; }
+
+
+  /**
+   * Should be called by ComputeMove() with the statistics of the search
+   * before it returns. Makes them available through GetLastSearchStats()
+   * and tells the listener about them.
+   */
+
+  protected void SearchCompleted(SearchStats stats)
+  {
+    m_last_stats = stats;
+
+    SearchListener l = m_listener;
+
+    if (l != null) l.SearchCompleted(this, stats);
+  }
+}
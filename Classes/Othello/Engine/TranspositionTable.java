@@ -0,0 +1,319 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ * The class TranspositionTable is used by Engine to remember the results of
+ * positions that have already been searched, so that a position that is
+ * reached again through another order of moves does not have to be searched
+ * again.
+ * <P>
+ * Positions are identified by Zobrist hash keys: every combination of square
+ * and color has a random 64 bit number, and the key of a position is all the
+ * numbers for the occupied squares xor:ed together (plus one more number when
+ * white is to move). This makes it possible to update the key incrementally
+ * when a move is made.
+ * <P>
+ * The table has a fixed size that is decided when it is created, and stores
+ * everything in one array of longs (no objects are created when it is used),
+ * or outside the Java heap in direct byte buffers, for tables of several
+ * gigabytes that are shared by many engines (see SharedTranspositionTable).
+ * Each entry is two longs: the key xor:ed with the data, and the data itself,
+ * where the data holds the value, the search depth, the kind of value (exact
+ * value, lower or upper bound), the best move, the search the entry was
+ * stored by and a tag (a number from 0 to 127) that tells how the value was
+ * evaluated (see DataTag()). The entries are grouped two by two in buckets.
+ * The first entry in a bucket is only replaced by results from searches that
+ * are at least as deep (or when it is left over from an earlier search) and
+ * the second entry is always replaced.
+ * <P>
+ * The table is read and written by several threads at the same time
+ * without locking. A thread may read an entry while another one is writing
+ * it, and see the new key with the old data, but then the key xor:ed with the
+ * data does not give the key, and the entry is not found.
+ * <P>
+ * Values are only comparable between searches that evaluate positions in
+ * the same way, so Engine changes the keys by a number that depends on the
+ * evaluation (see Engine.SetEvaluationContext()). Entries from earlier
+ * searches are found when the evaluation is the same.
+ */
+
+final class TranspositionTable
+{
+  static final int BOUND_EXACT = 1;
+  static final int BOUND_LOWER = 2;
+  static final int BOUND_UPPER = 3;
+
+  private static final int ENTRY_BYTES = 16;
+
+  /**
+   * A table outside the heap is divided into buffers of 1 << CHUNK_BITS
+   * buckets (a buffer is indexed with an int).
+   */
+
+  private static final int CHUNK_BITS = 25;
+
+  private static final long ZOBRIST[][] = new long[3][64];
+  private static final long ZOBRIST_FLIP[] = new long[64];
+  private static final long ZOBRIST_WHITE_TO_MOVE;
+
+  static
+  {
+    // A fixed seed makes the keys the same every time the program is run:
+
+    Random random = new Random(19771110);
+
+    for (int sq=0; sq<64; sq++)
+    {
+      ZOBRIST[Score.WHITE][sq] = random.nextLong();
+      ZOBRIST[Score.BLACK][sq] = random.nextLong();
+      ZOBRIST_FLIP[sq] = ZOBRIST[Score.WHITE][sq] ^ ZOBRIST[Score.BLACK][sq];
+    }
+
+    ZOBRIST_WHITE_TO_MOVE = random.nextLong();
+  }
+
+  private long m_table[];
+  private ByteBuffer m_buffers[];
+  private long m_mask;
+
+  /**
+   * The number of the current search (1 to 255), stored with the entries.
+   * Set by the thread that starts a search and read by the threads that
+   * store results, so it is volatile.
+   */
+
+  private volatile int m_age;
+
+
+  /**
+   * Creates a table that uses at most bytes bytes of memory (at least two
+   * entries are always created).
+   */
+
+  TranspositionTable(long bytes)
+  {
+    this(bytes, false);
+  }
+
+
+  /**
+   * Creates a table that uses at most bytes bytes of memory, outside the
+   * Java heap if offheap is set. Tables on the heap are at most 2 GB.
+   */
+
+  TranspositionTable(long bytes, boolean offheap)
+  {
+    long buckets = 1;
+    long maxbuckets = offheap ? 1L << 40 : 1L << 26;
+
+    while (buckets * 4 * ENTRY_BYTES <= bytes && buckets < maxbuckets)
+      buckets *= 2;
+
+    m_mask = buckets - 1;
+    m_age = 1;
+
+    if (! offheap)
+    {
+      m_table = new long[(int) buckets * 4];
+      return;
+    }
+
+    int chunk = (int) Math.min(buckets, 1L << CHUNK_BITS);
+
+    m_buffers = new ByteBuffer[(int) (buckets / chunk)];
+
+    for (int i=0; i < m_buffers.length; i++)
+      m_buffers[i] = ByteBuffer.allocateDirect(chunk * 2 * ENTRY_BYTES)
+        .order(ByteOrder.nativeOrder());
+  }
+
+
+  /**
+   * Returns the number of bytes the entries take.
+   */
+
+  long GetBytes() { return (m_mask + 1) * 2 * ENTRY_BYTES; }
+
+
+  /**
+   * Returns the key for the position where white has whitebits, black has
+   * blackbits and player is to move.
+   */
+
+  static long ComputeKey(long whitebits, long blackbits, int player)
+  {
+    long key = player == Score.WHITE ? ZOBRIST_WHITE_TO_MOVE : 0;
+
+    for (; whitebits != 0; whitebits &= whitebits - 1)
+      key ^= ZOBRIST[Score.WHITE][Long.numberOfTrailingZeros(whitebits)];
+
+    for (; blackbits != 0; blackbits &= blackbits - 1)
+      key ^= ZOBRIST[Score.BLACK][Long.numberOfTrailingZeros(blackbits)];
+
+    return key;
+  }
+
+
+  /**
+   * Returns the key after player has played at square index sq, turning the
+   * pieces in flips, in the position with the key key. The other player is
+   * to move in the new position.
+   */
+
+  static long UpdateKey(long key, int player, int sq, long flips)
+  {
+    key ^= ZOBRIST[player][sq] ^ ZOBRIST_WHITE_TO_MOVE;
+
+    for (; flips != 0; flips &= flips - 1)
+      key ^= ZOBRIST_FLIP[Long.numberOfTrailingZeros(flips)];
+
+    return key;
+  }
+
+
+  /**
+   * Returns the key for the same position as key, but with the other player
+   * to move (used when a player has to pass).
+   */
+
+  static long PassKey(long key) { return key ^ ZOBRIST_WHITE_TO_MOVE; }
+
+
+  /**
+   * Starts a new search. Entries stored during earlier searches are the
+   * first to be replaced. A table that is shared by several engines is
+   * advanced by its owner instead (see SharedTranspositionTable.NewSearch()),
+   * since one engine's new search does not make the results of the others
+   * old.
+   */
+
+  void NewSearch()
+  {
+    m_age = m_age % 255 + 1;
+  }
+
+
+  /**
+   * Removes all entries.
+   */
+
+  void Clear()
+  {
+    if (m_table != null) Arrays.fill(m_table, 0);
+    else
+      for (int i=0; i < m_buffers.length; i++)
+        for (int j=0; j < m_buffers[i].capacity(); j += 8)
+          m_buffers[i].putLong(j, 0);
+  }
+
+
+  /**
+   * Looks up the position with the key key. Returns 0 if it is not in the
+   * table, otherwise the stored data, which is read with the functions
+   * DataValue(), DataDepth(), DataBound() and DataMove().
+   */
+
+  long Probe(long key)
+  {
+    long i = (key & m_mask) << 2;
+
+    for (int slot=0; slot<4; slot += 2)
+    {
+      long data = Get(i+slot+1);
+
+      if (data != 0 && (Get(i+slot) ^ data) == key) return data;
+    }
+
+    return 0;
+  }
+
+
+  static int DataValue(long data) { return (int) data; }
+
+  static int DataDepth(long data) { return (int) (data >>> 32) & 0xff; }
+
+  static int DataBound(long data) { return (int) (data >>> 40) & 3; }
+
+
+  /**
+   * Returns the square index of the best move, or -1 if there is none.
+   */
+
+  static int DataMove(long data) { return ((int) (data >>> 42) & 0x7f) - 1; }
+
+
+  /**
+   * Returns the tag that was given to Store(). Engine uses it for a setting
+   * of the evaluation that changes with the search depth: the best move
+   * stored by a search with another tag is still a good guess, but the
+   * value is not used.
+   */
+
+  static int DataTag(long data) { return (int) (data >>> 57); }
+
+
+  /**
+   * Stores the result of a search to depth depth in the position with the
+   * key key. move is the square index of the best move (-1 if unknown) and
+   * tag is returned by DataTag() (0 to 127).
+   */
+
+  void Store(long key, int depth, int bound, int value, int move, int tag)
+  {
+    long i = (key & m_mask) << 2;
+
+    long data = (value & 0xffffffffL) |
+      ((long) Math.min(depth, 255) << 32) |
+      ((long) bound << 40) |
+      ((long) (move + 1) << 42) |
+      ((long) m_age << 49) |
+      ((long) tag << 57);
+
+    long first = Get(i+1);
+
+    int slot = 2;
+
+    if (first == 0 || DataAge(first) != m_age ||
+        (Get(i) ^ first) == key ||
+        DataDepth(first) <= depth)
+      slot = 0;
+
+    Put(i+slot, key ^ data);
+    Put(i+slot+1, data);
+  }
+
+
+  /**
+   * Returns the long with the index i (counted in longs from the start of
+   * the table).
+   */
+
+  private long Get(long i)
+  {
+    if (m_table != null) return m_table[(int) i];
+
+    return m_buffers[(int) (i >>> (CHUNK_BITS + 2))].getLong(
+      (int) (i & ((4L << CHUNK_BITS) - 1)) << 3);
+  }
+
+
+  private void Put(long i, long value)
+  {
+    if (m_table != null) m_table[(int) i] = value;
+    else
+      m_buffers[(int) (i >>> (CHUNK_BITS + 2))].putLong(
+        (int) (i & ((4L << CHUNK_BITS) - 1)) << 3, value);
+  }
+
+
+  private static int DataAge(long data) { return (int) (data >>> 49) & 0xff; }
+}
@@ -0,0 +1,211 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+
+/**
+ * Command line program that fits the parameters of ProbCut to searches of
+ * positions from self-play games and writes them to a file that can be read
+ * with ProbCut.Read():
+ * <PRE>
+ *   java Othello.Engine.CalibrateProbCut [options] probcut-file
+ *
+ *   -positions n  number of positions to search (default 3000)
+ *   -maxdepth n   deepest search to calibrate (default 8); deeper searches
+ *                 use its parameters
+ *   -level n      strength level of the self-play engine (default 4)
+ *   -random n     number of random moves at the start of each self-play
+ *                 game (default 10)
+ *   -seed n       random seed for the self-play games (default 1)
+ *   -patterns f   evaluate with the pattern weights in file f; the
+ *                 parameters only fit an engine that evaluates the same way
+ * </PRE>
+ * Every position is searched to each depth from ProbCut.MIN_DEPTH to
+ * maxdepth and to the shallow depth that predicts it, and a straight line
+ * is fitted to the pairs of values for each depth and phase by least
+ * squares. The standard deviation of the points from the line is the sigma
+ * of the depth and phase. Positions that are too close to the end of the
+ * game for a depth, and values that are won or lost games, are left out.
+ */
+
+public class CalibrateProbCut
+{
+  /**
+   * Values beyond this are won or lost games rather than evaluations (see
+   * Engine).
+   */
+
+  private static final int MAX_EVALUATION = 50000;
+
+  /**
+   * The number of pairs of values that are needed to fit a line.
+   */
+
+  private static final int MIN_SAMPLES = 30;
+
+
+  public static void main(String args[]) throws IOException
+  {
+    int positions = 3000;
+    int maxdepth = 8;
+    int level = 4;
+    int randommoves = 10;
+    int seed = 1;
+    String patterns = null;
+    String output = null;
+
+    for (int i=0; i < args.length; i++)
+    {
+      if (args[i].equals("-positions"))
+        positions = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-maxdepth"))
+        maxdepth = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-level")) level = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-random"))
+        randommoves = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-seed")) seed = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-patterns")) patterns = args[++i];
+      else output = args[i];
+    }
+
+    if (output == null || maxdepth < ProbCut.MIN_DEPTH)
+    {
+      System.err.println("usage: CalibrateProbCut [-positions n] " +
+        "[-maxdepth n] [-level n] [-random n] [-seed n] [-patterns file] " +
+        "probcut-file");
+      System.exit(1);
+    }
+
+    Engine player = new Engine(level, seed);
+    Engine searcher = new Engine(level, seed);
+
+    if (patterns != null)
+    {
+      InputStream in = new FileInputStream(patterns);
+      PatternEvaluator evaluator = PatternEvaluator.Read(in);
+
+      in.close();
+      player.SetPatternEvaluator(evaluator);
+      searcher.SetPatternEvaluator(evaluator);
+    }
+
+    // The sums that the lines are fitted from, for each phase and depth:
+
+    int phases = ProbCut.PHASES;
+    double n[][] = new double[phases][maxdepth + 1];
+    double sx[][] = new double[phases][maxdepth + 1];
+    double sy[][] = new double[phases][maxdepth + 1];
+    double sxx[][] = new double[phases][maxdepth + 1];
+    double sxy[][] = new double[phases][maxdepth + 1];
+    double syy[][] = new double[phases][maxdepth + 1];
+
+    Random random = new Random(seed);
+    int searched = 0;
+    long start = System.nanoTime();
+
+    while (searched < positions)
+    {
+      Game g = new Game();
+
+      while (g.GetWhoseTurn() != Score.NOBODY && searched < positions)
+      {
+        int turn = g.GetWhoseTurn();
+        long playerbits = g.GetBits(turn);
+        long opponentbits = g.GetBits(Score.GetOpponent(turn));
+        int pieces = Long.bitCount(playerbits | opponentbits);
+
+        if (g.GetMoveNumber() >= randommoves &&
+            pieces + ProbCut.MIN_DEPTH < 64)
+        {
+          int phase = ProbCut.GetPhase(pieces);
+
+          for (int depth = ProbCut.MIN_DEPTH;
+               depth <= maxdepth && pieces + depth < 64; depth++)
+          {
+            int x = searcher.SearchPosition(turn, playerbits, opponentbits,
+              ProbCut.GetShallowDepth(depth), depth);
+            int y = searcher.SearchPosition(turn, playerbits, opponentbits,
+              depth, depth);
+
+            if (Math.abs(x) > MAX_EVALUATION || Math.abs(y) > MAX_EVALUATION)
+              continue;
+
+            n[phase][depth]++;
+            sx[phase][depth] += x;
+            sy[phase][depth] += y;
+            sxx[phase][depth] += (double) x * x;
+            sxy[phase][depth] += (double) x * y;
+            syy[phase][depth] += (double) y * y;
+          }
+
+          searched++;
+
+          if (searched % 500 == 0)
+            System.out.println(searched + " positions in " +
+              (System.nanoTime() - start) / 1000000000 + " s");
+        }
+
+        Move m;
+
+        if (g.GetMoveNumber() < randommoves)
+        {
+          long moves = g.GetLegalMoves(turn);
+          int k = random.nextInt(Long.bitCount(moves));
+
+          for (int i=0; i < k; i++) moves &= moves - 1;
+
+          int sq = Long.numberOfTrailingZeros(moves);
+
+          m = new Move(Bitboard.SquareX(sq), Bitboard.SquareY(sq), turn);
+        }
+        else m = player.ComputeMove(g);
+
+        if (m == null) break;
+
+        g.MakeMove(m);
+      }
+    }
+
+    ProbCut probcut = new ProbCut(maxdepth);
+
+    for (int phase=0; phase < phases; phase++)
+    for (int depth = ProbCut.MIN_DEPTH; depth <= maxdepth; depth++)
+    {
+      double count = n[phase][depth];
+      double d = count * sxx[phase][depth] - sx[phase][depth] * sx[phase][depth];
+
+      if (count < MIN_SAMPLES || d <= 0) continue;
+
+      double a = (count * sxy[phase][depth] -
+        sx[phase][depth] * sy[phase][depth]) / d;
+      double b = (sy[phase][depth] - a * sx[phase][depth]) / count;
+
+      // The sum of the squared distances from the line, expanded:
+
+      double sum = syy[phase][depth] + a * a * sxx[phase][depth] +
+        count * b * b - 2 * a * sxy[phase][depth] - 2 * b * sy[phase][depth] +
+        2 * a * b * sx[phase][depth];
+
+      if (a <= 0) continue;
+
+      probcut.SetParameters(phase, depth, (float) a, (float) b,
+        (float) Math.sqrt(Math.max(sum, 0) / count));
+    }
+
+    System.out.print(probcut);
+
+    OutputStream out = new FileOutputStream(output);
+
+    probcut.Write(out);
+    out.close();
+  }
+}
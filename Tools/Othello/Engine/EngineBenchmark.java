@@ -0,0 +1,388 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+
+/**
+ * Command line program that measures the speed of the engine on a fixed set
+ * of positions, so that the effect of a change to the engine can be compared
+ * with a baseline:
+ * <PRE>
+ *   java Othello.Engine.EngineBenchmark [options]
+ *
+ *   -levels a-b  strength levels to run ComputeMove() at (default 1-7)
+ *   -iterations n  repetitions of each of the small benchmarks
+ *                (default 200000)
+ *   -threads n   threads for ComputeMove() (default 1)
+ *   -patterns f  evaluate with the pattern weights in file f (see
+ *                PatternEvaluator)
+ * </PRE>
+ * The positions are reached by playing random (but always the same) moves
+ * from the initial position. For each benchmark the time and the number of
+ * bytes allocated per operation are printed, and for ComputeMove() also the
+ * number of positions searched per second. Allocation is only measured on
+ * JVMs that support com.sun.management.ThreadMXBean, and only for the
+ * calling thread (so not for the helper threads when -threads is used).
+ * <P>
+ * Every benchmark is run once before it is measured, so that the code has
+ * been compiled by the JIT compiler. Run the program several times and
+ * compare the best results; the numbers vary from run to run.
+ */
+
+public class EngineBenchmark
+{
+  /**
+   * The number of positions in the suite and the number of moves played to
+   * reach them. The positions are spread over the game, from the opening to
+   * a few moves before the endgame solver takes over.
+   */
+
+  private static final int POSITIONS_PER_STAGE = 4;
+  private static final int STAGE_MOVES[] = { 8, 16, 24, 32 };
+
+  private static final int SUITE_SEED = 20130101;
+
+  /**
+   * Results are added to this so that the JIT compiler can not remove the
+   * code that is measured.
+   */
+
+  private static long m_sink;
+
+  /**
+   * The pattern evaluator given with -patterns, or null.
+   */
+
+  private static PatternEvaluator m_patterns;
+
+
+  public static void main(String args[]) throws IOException
+  {
+    int minlevel = 1;
+    int maxlevel = 7;
+    int iterations = 200000;
+    int threads = 1;
+
+    for (int i=0; i < args.length; i++)
+    {
+      if (args[i].equals("-levels"))
+      {
+        String range[] = args[++i].split("-");
+        minlevel = Integer.parseInt(range[0]);
+        maxlevel = Integer.parseInt(range[range.length-1]);
+      }
+      else if (args[i].equals("-iterations"))
+        iterations = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-threads"))
+        threads = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-patterns"))
+      {
+        InputStream in = new FileInputStream(args[++i]);
+
+        m_patterns = PatternEvaluator.Read(in);
+        in.close();
+      }
+      else
+      {
+        System.err.println("usage: EngineBenchmark [-levels a-b] " +
+          "[-iterations n] [-threads n] [-patterns file]");
+        System.exit(1);
+      }
+    }
+
+    Game suite[] = CreateSuite();
+
+    System.out.println("Suite: " + suite.length + " positions");
+    System.out.println();
+    System.out.println(Pad("benchmark", 24) + Pad("ns/op", 14) +
+      Pad("bytes/op", 12) + "nodes/s");
+
+    for (int pass=0; pass < 2; pass++)
+    {
+      boolean print = pass == 1;
+
+      BenchmarkGenerateMoves(suite, iterations, print);
+      BenchmarkPosition(suite, iterations, print);
+      BenchmarkMakeMove(suite, iterations, print);
+      BenchmarkEvaluatePosition(suite, iterations, print);
+    }
+
+    for (int level=minlevel; level <= maxlevel; level++)
+    {
+      BenchmarkComputeMove(suite, level, threads, false);
+      BenchmarkComputeMove(suite, level, threads, true);
+    }
+
+    if (m_sink == 42) System.out.println();
+  }
+
+
+  /**
+   * Returns the positions of the suite, as games so that ComputeMove() can
+   * be called with them.
+   */
+
+  private static Game[] CreateSuite()
+  {
+    Random random = new Random(SUITE_SEED);
+    Game suite[] = new Game[STAGE_MOVES.length * POSITIONS_PER_STAGE];
+    int n = 0;
+
+    for (int stage=0; stage < STAGE_MOVES.length; stage++)
+    for (int i=0; i < POSITIONS_PER_STAGE; i++)
+    {
+      Game g;
+
+      do
+      {
+        g = new Game();
+
+        while (g.GetMoveNumber() < STAGE_MOVES[stage] &&
+               g.GetWhoseTurn() != Score.NOBODY)
+        {
+          int player = g.GetWhoseTurn();
+          long moves = g.GetLegalMoves(player);
+          int k = random.nextInt(Long.bitCount(moves));
+
+          for (; k > 0; k--) moves &= moves - 1;
+
+          int sq = Long.numberOfTrailingZeros(moves);
+
+          g.MakeMove(new Move(Bitboard.SquareX(sq), Bitboard.SquareY(sq),
+            player));
+        }
+      }
+      while (g.GetWhoseTurn() == Score.NOBODY);
+
+      suite[n++] = g;
+    }
+
+    return suite;
+  }
+
+
+  private static void BenchmarkGenerateMoves(Game suite[], int iterations,
+    boolean print)
+  {
+    long playerbits[] = Bits(suite, true);
+    long opponentbits[] = Bits(suite, false);
+    long sink = 0;
+
+    long bytes = AllocatedBytes();
+    long start = System.nanoTime();
+
+    for (int i=0; i < iterations; i++)
+    {
+      int k = i % suite.length;
+
+      sink += Bitboard.GenerateMoves(playerbits[k], opponentbits[k]);
+    }
+
+    long time = System.nanoTime() - start;
+    bytes = AllocatedBytes() - bytes;
+
+    m_sink += sink;
+
+    if (print) Report("GenerateMoves", time, bytes, iterations, -1);
+  }
+
+
+  private static void BenchmarkPosition(Game suite[], int iterations,
+    boolean print)
+  {
+    Position start_position = new Position();
+    Move first = new Move(4, 3, Score.BLACK);
+    long sink = 0;
+
+    long bytes = AllocatedBytes();
+    long start = System.nanoTime();
+
+    for (int i=0; i < iterations; i++)
+      sink += new Position(start_position, first).GetScore(Score.BLACK);
+
+    long time = System.nanoTime() - start;
+    bytes = AllocatedBytes() - bytes;
+
+    m_sink += sink;
+
+    if (print) Report("new Position", time, bytes, iterations, -1);
+  }
+
+
+  /**
+   * Measures one MakeMove() followed by one TakeBackMove() in each of the
+   * positions of the suite.
+   */
+
+  private static void BenchmarkMakeMove(Game suite[], int iterations,
+    boolean print)
+  {
+    Move moves[] = new Move[suite.length];
+
+    for (int k=0; k < suite.length; k++)
+    {
+      int player = suite[k].GetWhoseTurn();
+      int sq = Long.numberOfTrailingZeros(suite[k].GetLegalMoves(player));
+
+      moves[k] = new Move(Bitboard.SquareX(sq), Bitboard.SquareY(sq), player);
+    }
+
+    long sink = 0;
+
+    long bytes = AllocatedBytes();
+    long start = System.nanoTime();
+
+    for (int i=0; i < iterations; i++)
+    {
+      int k = i % suite.length;
+
+      if (suite[k].MakeMove(moves[k])) sink++;
+      if (suite[k].TakeBackMove()) sink++;
+    }
+
+    long time = System.nanoTime() - start;
+    bytes = AllocatedBytes() - bytes;
+
+    m_sink += sink;
+
+    if (print) Report("MakeMove+TakeBackMove", time, bytes, iterations, -1);
+  }
+
+
+  private static void BenchmarkEvaluatePosition(Game suite[], int iterations,
+    boolean print)
+  {
+    Engine engine = new Engine(5, 1);
+    long playerbits[] = Bits(suite, true);
+    long opponentbits[] = Bits(suite, false);
+    long sink = 0;
+
+    engine.SetPatternEvaluator(m_patterns);
+
+    long bytes = AllocatedBytes();
+    long start = System.nanoTime();
+
+    for (int i=0; i < iterations; i++)
+    {
+      int k = i % suite.length;
+
+      sink += engine.EvaluatePosition(playerbits[k], opponentbits[k]);
+    }
+
+    long time = System.nanoTime() - start;
+    bytes = AllocatedBytes() - bytes;
+
+    m_sink += sink;
+
+    if (print) Report("EvaluatePosition", time, bytes, iterations, -1);
+  }
+
+
+  /**
+   * Calls ComputeMove() once for every position in the suite. The engine
+   * first makes a call that is not measured, so that the transposition
+   * table has been allocated. Entries from earlier searches are used by
+   * later ones, so the positions are always searched in the same order.
+   */
+
+  private static void BenchmarkComputeMove(Game suite[], int level,
+    int threads, boolean print)
+  {
+    Engine engine = new Engine(level, 1);
+
+    engine.SetPatternEvaluator(m_patterns);
+    engine.SetThreads(threads);
+    engine.ComputeMove(suite[0]);
+
+    long nodes = 0;
+    long time = 0;
+    long bytes = 0;
+
+    for (int k=0; k < suite.length; k++)
+    {
+      long b = AllocatedBytes();
+      long start = System.nanoTime();
+
+      engine.ComputeMove(suite[k]);
+
+      time += System.nanoTime() - start;
+      bytes += AllocatedBytes() - b;
+      nodes += engine.GetLastSearchStats().GetNodes();
+    }
+
+    if (print)
+      Report("ComputeMove level " + level, time, bytes, suite.length, nodes);
+  }
+
+
+  /**
+   * Returns the pieces of the player to move (or of the opponent when
+   * to_move is false) in each position of the suite.
+   */
+
+  private static long[] Bits(Game suite[], boolean to_move)
+  {
+    long bits[] = new long[suite.length];
+
+    for (int k=0; k < suite.length; k++)
+    {
+      int player = suite[k].GetWhoseTurn();
+
+      bits[k] = suite[k].GetBits(to_move ? player : Score.GetOpponent(player));
+    }
+
+    return bits;
+  }
+
+
+  /**
+   * Returns the number of bytes allocated by the current thread so far, or
+   * -1 when the JVM can not tell.
+   */
+
+  private static long AllocatedBytes()
+  {
+    Object bean = ManagementFactory.getThreadMXBean();
+
+    if (! (bean instanceof com.sun.management.ThreadMXBean)) return -1;
+
+    return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+      Thread.currentThread().getId());
+  }
+
+
+  private static void Report(String name, long time, long bytes, int ops,
+    long nodes)
+  {
+    String line = Pad(name, 24) + Pad(String.format("%.1f",
+      (double) time / ops), 14);
+
+    if (bytes >= 0)
+      line += Pad(String.format("%.1f", (double) bytes / ops), 12);
+    else
+      line += Pad("-", 12);
+
+    if (nodes >= 0)
+      line += String.format("%.0f", nodes * 1e9 / Math.max(time, 1));
+
+    System.out.println(line);
+  }
+
+
+  private static String Pad(String s, int width)
+  {
+    StringBuilder sb = new StringBuilder(s);
+
+    while (sb.length() < width) sb.append(' ');
+
+    return sb.toString();
+  }
+}
@@ -0,0 +1,112 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Command line program that writes an opening book (see OpeningBook) from
+ * self-play games, from a list of games, or both:
+ * <PRE>
+ *   java Othello.Engine.MakeOpeningBook [options] book-file
+ *
+ *   -games n    number of self-play games (default 0)
+ *   -level n    strength level of the self-play engines (default 6)
+ *   -seed n     random seed for the self-play engines (default 1)
+ *   -plies n    number of moves from each game to add (default 12)
+ *   -min n      leave out moves played fewer than n times (default 2)
+ *   -input file add the games in file, one per line, with moves written
+ *               like in CommandInterface.GetLastMove() ("F5D6C3D3...")
+ * </PRE>
+ */
+
+public class MakeOpeningBook
+{
+  public static void main(String args[]) throws IOException
+  {
+    int games = 0;
+    int level = 6;
+    int seed = 1;
+    int plies = 12;
+    int mincount = 2;
+    String input = null;
+    String output = null;
+
+    for (int i=0; i < args.length; i++)
+    {
+      if (args[i].equals("-games")) games = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-level")) level = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-seed")) seed = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-plies")) plies = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-min")) mincount = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-input")) input = args[++i];
+      else output = args[i];
+    }
+
+    if (output == null)
+    {
+      System.err.println("usage: MakeOpeningBook [-games n] [-level n] " +
+        "[-seed n] [-plies n] [-min n] [-input file] book-file");
+      System.exit(1);
+    }
+
+    OpeningBookBuilder builder = new OpeningBookBuilder();
+
+    if (input != null)
+    {
+      BufferedReader in = new BufferedReader(new FileReader(input));
+      String line;
+      int lineno = 0;
+
+      while ((line = in.readLine()) != null)
+      {
+        lineno++;
+
+        Game g = ParseGame(line.trim());
+
+        if (g == null)
+          System.err.println(input + ":" + lineno + ": illegal game skipped");
+        else
+          builder.AddGame(g, plies);
+      }
+
+      in.close();
+    }
+
+    if (games > 0) builder.AddSelfPlayGames(games, plies, level, seed);
+
+    OutputStream out = new FileOutputStream(output);
+
+    builder.Write(out, mincount);
+    out.close();
+  }
+
+
+  /**
+   * Returns the game with the moves in line, or null if a move is illegal.
+   */
+
+  private static Game ParseGame(String line)
+  {
+    Game g = new Game();
+
+    for (int i=0; i+1 < line.length(); i += 2)
+    {
+      int x = Character.toUpperCase(line.charAt(i)) - 'A' + 1;
+      int y = line.charAt(i+1) - '0';
+
+      if (x < 1 || x > 8 || y < 1 || y > 8) return null;
+
+      if (! g.MakeMove(new Move(x, y, g.GetWhoseTurn()))) return null;
+    }
+
+    return g;
+  }
+}
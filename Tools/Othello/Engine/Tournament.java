@@ -0,0 +1,352 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Command line program that plays games between two engine configurations,
+ * A and B, and prints how A did against B, so that a change to the engine
+ * can be shown not to make it weaker:
+ * <PRE>
+ *   java Othello.Engine.Tournament [options]
+ *
+ *   -a spec     configuration of engine A (default level=5)
+ *   -b spec     configuration of engine B (default level=5)
+ *   -games n    number of openings; each is played twice, with A as white
+ *               and as black (default 100)
+ *   -random n   number of random moves in each opening (default 8)
+ *   -threads n  number of games played at the same time (default the
+ *               number of processors)
+ *   -seed n     random seed for the openings and the engines (default 1)
+ * </PRE>
+ * A configuration is a list of settings separated by commas, such as
+ * "level=6,time=200,patterns=engine.patterns":
+ * <PRE>
+ *   level=n     strength level (see SuperEngine.SetStrength())
+ *   time=ms     time limit per move in milliseconds (default none, the
+ *               engine searches to the depth of its level)
+ *   patterns=f  evaluate with the pattern weights in file f
+ *   probcut=f   search selectively with the ProbCut parameters in file f
+ *   threshold=t the ProbCut threshold (default ProbCut.DEFAULT_THRESHOLD)
+ *   book=f      use the opening book in file f
+ *   solver=n    empty squares from which the endgame solver is used
+ *   tt=n        transposition table size in megabytes
+ * </PRE>
+ * Opening i is played with the random seed seed + i, both for the random
+ * moves and for the engines (see SuperEngine(int, int)), so the same
+ * command plays the same games again (except with time limits, which
+ * depend on the speed of the computer).
+ * <P>
+ * The result is given as wins, draws and losses for A, the score (wins plus
+ * half the draws, divided by the number of games), and the difference in
+ * Elo rating that the score corresponds to, with a 95% confidence interval.
+ * A change is not shown to lose strength if the interval includes 0 or is
+ * above it. The time per move and positions searched per second of each
+ * engine are printed too.
+ */
+
+public class Tournament
+{
+  private static int m_wins, m_draws, m_losses;
+  private static long m_discs;
+  private static long m_moves[] = new long[2];
+  private static long m_time[] = new long[2];
+  private static long m_max_time[] = new long[2];
+  private static long m_nodes[] = new long[2];
+
+
+  public static void main(String args[]) throws Exception
+  {
+    String spec[] = { "level=5", "level=5" };
+    int games = 100;
+    int randommoves = 8;
+    int threads = Runtime.getRuntime().availableProcessors();
+    int seed = 1;
+
+    for (int i=0; i < args.length; i++)
+    {
+      if (args[i].equals("-a")) spec[0] = args[++i];
+      else if (args[i].equals("-b")) spec[1] = args[++i];
+      else if (args[i].equals("-games")) games = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-random"))
+        randommoves = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-threads"))
+        threads = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-seed")) seed = Integer.parseInt(args[++i]);
+      else
+      {
+        System.err.println("usage: Tournament [-a spec] [-b spec] " +
+          "[-games n] [-random n] [-threads n] [-seed n]");
+        System.exit(1);
+      }
+    }
+
+    final Config config[] = { new Config(spec[0]), new Config(spec[1]) };
+    final int random = randommoves;
+
+    System.out.println("A: " + spec[0]);
+    System.out.println("B: " + spec[1]);
+    System.out.println(games * 2 + " games on " + threads + " threads");
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    long start = System.nanoTime();
+
+    for (int i=0; i < games; i++)
+    {
+      final int gameseed = seed + i;
+
+      executor.execute(new Runnable()
+      {
+        public void run() { PlayOpening(config, random, gameseed); }
+      });
+    }
+
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+
+    PrintResult((System.nanoTime() - start) / 1000000);
+  }
+
+
+  /**
+   * The settings of one of the engines.
+   */
+
+  private static class Config
+  {
+    int m_level = 5;
+    long m_time = 0;
+    int m_solver = -1;
+    long m_tt = -1;
+    double m_threshold = ProbCut.DEFAULT_THRESHOLD;
+    PatternEvaluator m_patterns;
+    ProbCut m_probcut;
+    OpeningBook m_book;
+
+
+    Config(String spec) throws IOException
+    {
+      String settings[] = spec.split(",");
+
+      for (int i=0; i < settings.length; i++)
+      {
+        String s[] = settings[i].split("=", 2);
+
+        if (s.length != 2)
+          throw new IllegalArgumentException("bad setting: " + settings[i]);
+
+        if (s[0].equals("level")) m_level = Integer.parseInt(s[1]);
+        else if (s[0].equals("time")) m_time = Long.parseLong(s[1]);
+        else if (s[0].equals("solver")) m_solver = Integer.parseInt(s[1]);
+        else if (s[0].equals("tt")) m_tt = Long.parseLong(s[1]) << 20;
+        else if (s[0].equals("threshold"))
+          m_threshold = Double.parseDouble(s[1]);
+        else if (s[0].equals("patterns"))
+        {
+          InputStream in = new FileInputStream(s[1]);
+
+          m_patterns = PatternEvaluator.Read(in);
+          in.close();
+        }
+        else if (s[0].equals("probcut"))
+        {
+          InputStream in = new FileInputStream(s[1]);
+
+          m_probcut = ProbCut.Read(in);
+          in.close();
+        }
+        else if (s[0].equals("book"))
+        {
+          InputStream in = new FileInputStream(s[1]);
+
+          m_book = OpeningBook.Read(in);
+          in.close();
+        }
+        else throw new IllegalArgumentException("bad setting: " + settings[i]);
+      }
+
+      if (m_probcut != null) m_probcut.SetThreshold(m_threshold);
+    }
+
+
+    /**
+     * Returns a new engine with these settings and the random seed seed.
+     * (Engines are not shared between threads, and games are independent
+     * so that the result does not depend on the order they are played in.)
+     */
+
+    SuperEngine CreateEngine(int seed)
+    {
+      Engine engine = new Engine(m_level, seed);
+
+      engine.SetPatternEvaluator(m_patterns);
+      engine.SetProbCut(m_probcut);
+      engine.SetOpeningBook(m_book);
+
+      if (m_solver >= 0) engine.SetEndgameSolverEmpties(m_solver);
+      if (m_tt >= 0) engine.SetTranspositionTableSize(m_tt);
+
+      return engine;
+    }
+  }
+
+
+  /**
+   * Plays the opening with the seed seed twice, with A playing white and
+   * black.
+   */
+
+  private static void PlayOpening(Config config[], int randommoves, int seed)
+  {
+    Random random = new Random(seed);
+    Game opening = new Game();
+
+    while (opening.GetMoveNumber() < randommoves &&
+           opening.GetWhoseTurn() != Score.NOBODY)
+    {
+      int player = opening.GetWhoseTurn();
+      long moves = opening.GetLegalMoves(player);
+      int n = random.nextInt(Long.bitCount(moves));
+
+      for (int k=0; k < n; k++) moves &= moves - 1;
+
+      int sq = Long.numberOfTrailingZeros(moves);
+
+      opening.MakeMove(new Move(Bitboard.SquareX(sq), Bitboard.SquareY(sq),
+        player));
+    }
+
+    PlayGame(config, opening, Score.WHITE, seed);
+    PlayGame(config, opening, Score.BLACK, seed);
+  }
+
+
+  /**
+   * Plays a game from opening with A playing acolor, and adds the result.
+   */
+
+  private static void PlayGame(Config config[], Game opening, int acolor,
+    int seed)
+  {
+    SuperEngine engine[] =
+      { config[0].CreateEngine(seed), config[1].CreateEngine(seed) };
+    long moves[] = new long[2];
+    long time[] = new long[2];
+    long maxtime[] = new long[2];
+    long nodes[] = new long[2];
+    Game g = new Game(opening);
+
+    while (g.GetWhoseTurn() != Score.NOBODY)
+    {
+      int e = g.GetWhoseTurn() == acolor ? 0 : 1;
+      long start = System.nanoTime();
+      Move m;
+
+      if (config[e].m_time > 0)
+        m = engine[e].ComputeMove(g, start + config[e].m_time * 1000000);
+      else
+        m = engine[e].ComputeMove(g);
+
+      long t = System.nanoTime() - start;
+
+      if (m == null || ! g.MakeMove(m))
+        throw new IllegalStateException("engine " + (char) ('A' + e) +
+          " made no legal move");
+
+      moves[e]++;
+      time[e] += t;
+      maxtime[e] = Math.max(maxtime[e], t);
+
+      if (engine[e].GetLastSearchStats() != null)
+        nodes[e] += engine[e].GetLastSearchStats().GetNodes();
+    }
+
+    int discs = g.GetScore(acolor) - g.GetScore(Score.GetOpponent(acolor));
+
+    synchronized (Tournament.class)
+    {
+      if (discs > 0) m_wins++;
+      else if (discs < 0) m_losses++;
+      else m_draws++;
+
+      m_discs += discs;
+
+      for (int e=0; e < 2; e++)
+      {
+        m_moves[e] += moves[e];
+        m_time[e] += time[e];
+        m_max_time[e] = Math.max(m_max_time[e], maxtime[e]);
+        m_nodes[e] += nodes[e];
+      }
+    }
+  }
+
+
+  private static synchronized void PrintResult(long millis)
+  {
+    int games = m_wins + m_draws + m_losses;
+
+    if (games == 0) return;
+
+    double score = (m_wins + 0.5 * m_draws) / games;
+
+    // The standard deviation of the score of a game, and from that of the
+    // average score:
+
+    double variance = (m_wins * (1 - score) * (1 - score) +
+      m_draws * (0.5 - score) * (0.5 - score) +
+      m_losses * score * score) / games;
+    double margin = 1.96 * Math.sqrt(variance / games);
+
+    System.out.println();
+    System.out.println("A wins " + m_wins + ", draws " + m_draws +
+      ", loses " + m_losses + " in " + millis / 1000.0 + " s");
+    System.out.println("A score " + Format(100 * score) + "%, discs " +
+      Format((double) m_discs / games) + " per game");
+    System.out.println("Elo A-B " + Format(Elo(score)) + " (" +
+      Format(Elo(score - margin)) + " to " + Format(Elo(score + margin)) +
+      ")");
+
+    for (int e=0; e < 2; e++)
+    {
+      double seconds = m_time[e] / 1e9;
+
+      System.out.println((char) ('A' + e) + ": " +
+        Format(m_time[e] / 1e6 / Math.max(m_moves[e], 1)) + " ms/move, max " +
+        Format(m_max_time[e] / 1e6) + " ms, " +
+        Math.round(seconds > 0 ? m_nodes[e] / seconds : 0) + " nodes/s");
+    }
+  }
+
+
+  /**
+   * Returns the difference in Elo rating that makes the expected score
+   * score.
+   */
+
+  private static double Elo(double score)
+  {
+    if (score <= 0) return Double.NEGATIVE_INFINITY;
+    if (score >= 1) return Double.POSITIVE_INFINITY;
+
+    return -400 * Math.log10(1 / score - 1);
+  }
+
+
+  private static String Format(double d)
+  {
+    if (Double.isInfinite(d)) return d > 0 ? "inf" : "-inf";
+
+    return String.valueOf(Math.round(d * 10) / 10.0);
+  }
+}
@@ -0,0 +1,140 @@
+// This code is freely distributable, but may neither be sold nor used or
+// included in any product sold for profit without permission from
+// Mats Luthman.
+
+package Othello.Engine;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+
+/**
+ * Command line program that trains the weights of a PatternEvaluator from
+ * self-play games, from a list of finished games, or both, and writes them
+ * to a file that can be read with PatternEvaluator.Read():
+ * <PRE>
+ *   java Othello.Engine.TrainPatterns [options] weights-file
+ *
+ *   -games n    number of self-play games (default 0)
+ *   -level n    strength level of the self-play engines (default 3)
+ *   -seed n     random seed for the self-play games (default 1)
+ *   -random n   number of random moves at the start of each self-play
+ *               game (default 10)
+ *   -epochs n   number of times to go through the positions (default 10)
+ *   -weights f  play the self-play games with the weights in file f
+ *               instead of the built in evaluation, to improve on them
+ *   -input file add the games in file, one per line, with moves written
+ *               like in CommandInterface.GetLastMove() ("F5D6C3D3...")
+ * </PRE>
+ */
+
+public class TrainPatterns
+{
+  public static void main(String args[]) throws IOException
+  {
+    int games = 0;
+    int level = 3;
+    int seed = 1;
+    int randommoves = 10;
+    int epochs = 10;
+    String weights = null;
+    String input = null;
+    String output = null;
+
+    for (int i=0; i < args.length; i++)
+    {
+      if (args[i].equals("-games")) games = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-level")) level = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-seed")) seed = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-random"))
+        randommoves = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-epochs"))
+        epochs = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-weights")) weights = args[++i];
+      else if (args[i].equals("-input")) input = args[++i];
+      else output = args[i];
+    }
+
+    if (output == null)
+    {
+      System.err.println("usage: TrainPatterns [-games n] [-level n] " +
+        "[-seed n] [-random n] [-epochs n] [-weights file] [-input file] " +
+        "weights-file");
+      System.exit(1);
+    }
+
+    PatternTrainer trainer = new PatternTrainer();
+
+    if (input != null)
+    {
+      BufferedReader in = new BufferedReader(new FileReader(input));
+      String line;
+      int lineno = 0;
+
+      while ((line = in.readLine()) != null)
+      {
+        lineno++;
+
+        Game g = ParseGame(line.trim());
+
+        if (g == null || ! trainer.AddGame(g))
+          System.err.println(input + ":" + lineno +
+            ": illegal or unfinished game skipped");
+      }
+
+      in.close();
+    }
+
+    if (games > 0)
+    {
+      PatternEvaluator evaluator = null;
+
+      if (weights != null)
+      {
+        InputStream in = new FileInputStream(weights);
+
+        evaluator = PatternEvaluator.Read(in);
+        in.close();
+      }
+
+      trainer.AddSelfPlayGames(games, level, seed, randommoves, evaluator);
+    }
+
+    PatternEvaluator evaluator = trainer.Train(epochs, seed);
+
+    System.out.println(trainer.GetSize() + " positions, average error " +
+      Math.round(trainer.GetError(evaluator)) / 100.0 + " pieces");
+
+    OutputStream out = new FileOutputStream(output);
+
+    evaluator.Write(out);
+    out.close();
+  }
+
+
+  /**
+   * Returns the game with the moves in line, or null if a move is illegal.
+   */
+
+  private static Game ParseGame(String line)
+  {
+    Game g = new Game();
+
+    for (int i=0; i+1 < line.length(); i += 2)
+    {
+      int x = Character.toUpperCase(line.charAt(i)) - 'A' + 1;
+      int y = line.charAt(i+1) - '0';
+
+      if (x < 1 || x > 8 || y < 1 || y > 8) return null;
+
+      if (! g.MakeMove(new Move(x, y, g.GetWhoseTurn()))) return null;
+    }
+
+    return g;
+  }
+}